@@ -0,0 +1,115 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.db.OrientDBInternal;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base state of the import benchmarks. A synthetic graph is generated once per trial and every invocation imports
+ * into a fresh database whose vertex and edge classes already exist. Databases of the {@code PLOCAL} type are stored in
+ * the temporary directory of the trial, so disk cache and file I/O are part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=8g"})
+public abstract class AbstractImportBenchmark {
+    @Param("10000")
+    public int nodeCount;
+    @Param("50000")
+    public int edgeCount;
+    @Param("4")
+    public int labelCount;
+    @Param({"SCALAR", "MIXED"})
+    public SyntheticGraph.PropertyShape shape;
+    @Param("1")
+    public int workers;
+    @Param("10000")
+    public int batchSize;
+    @Param("1")
+    public int maxClusters;
+    @Param({"MEMORY", "PLOCAL"})
+    public ODatabaseType databaseType;
+
+    protected Graph graph;
+    protected ImportOptions options;
+    protected OrientDBInternal context;
+    protected ODatabaseDocumentInternal db;
+    protected NodeIdRidMap nodeIdOrientDBIdMap;
+    private Path directory;
+    private OrientDB orientDB;
+    private Path databasesPath;
+    private String databaseName;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setupGraph() throws IOException {
+        directory = Files.createTempDirectory("biodwh2-orientdb-benchmark");
+        final Path graphFilePath = directory.resolve("mapped.db");
+        SyntheticGraph.create(graphFilePath, nodeCount, edgeCount, labelCount, shape);
+        graph = new Graph(graphFilePath, true);
+        options = new ImportOptions();
+        options.workers = workers;
+        options.batchSize = batchSize;
+        options.maxClusters = maxClusters;
+    }
+
+    @Setup(Level.Invocation)
+    public void setupDatabase() throws Exception {
+        databasesPath = directory.resolve("databases" + invocation);
+        orientDB = new OrientDB(databaseType == ODatabaseType.MEMORY ? "memory:" : "embedded:" + databasesPath,
+                                OrientDBConfig.defaultConfig());
+        context = OrientDBInternal.extract(orientDB);
+        databaseName = "benchmark" + invocation++;
+        context.create(databaseName, null, null, databaseType, OrientDBConfig.defaultConfig());
+        db = context.openNoAuthenticate(databaseName, null);
+        OrientDBService.createNodeClasses(db, graph, graph.getNodeLabels(), options);
+        OrientDBService.createEdgeClasses(db, graph, graph.getEdgeLabels(), options);
+        nodeIdOrientDBIdMap = NodeIdRidMap.offHeap(graph.getNumberOfNodes());
+        prepareDatabase();
+    }
+
+    protected void prepareDatabase() throws Exception {
+    }
+
+    protected ODatabaseDocumentInternal openSession() {
+        return context.openNoAuthenticate(databaseName, null);
+    }
+
+    protected void importNodes() throws InterruptedException {
+        try (DatabaseSessionPool pool = new DatabaseSessionPool(this::openSession, options.workers)) {
+            new NodeImporter(graph, options, nodeIdOrientDBIdMap, new ImportMetrics()).importNodes(pool,
+                                                                                                   graph.getNodeLabels());
+        } finally {
+            db.activateOnCurrentThread();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownDatabase() throws IOException {
+        db.activateOnCurrentThread();
+        db.close();
+        orientDB.close();
+        nodeIdOrientDBIdMap.close();
+        FileUtils.deleteDirectory(databasesPath.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownGraph() throws IOException {
+        graph.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+}
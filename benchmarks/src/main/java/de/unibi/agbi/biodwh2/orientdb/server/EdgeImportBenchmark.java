@@ -0,0 +1,21 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+public class EdgeImportBenchmark extends AbstractImportBenchmark {
+    @Param({"false", "true"})
+    public boolean lightweightEdges;
+
+    @Override
+    protected void prepareDatabase() throws InterruptedException {
+        options.lightweightEdges = lightweightEdges;
+        importNodes();
+    }
+
+    @Benchmark
+    public void importEdges() throws InterruptedException {
+        new EdgeImporter(graph, options, nodeIdOrientDBIdMap, new ImportMetrics()).importEdges(db,
+                                                                                               graph.getEdgeLabels());
+    }
+}
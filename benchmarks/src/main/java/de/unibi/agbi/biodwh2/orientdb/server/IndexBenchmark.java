@@ -0,0 +1,23 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+public class IndexBenchmark extends AbstractImportBenchmark {
+    @Param({"1", "4"})
+    public int indexThreads;
+
+    @Override
+    protected void prepareDatabase() throws InterruptedException {
+        importNodes();
+    }
+
+    @Benchmark
+    public void createIndices() throws InterruptedException {
+        try {
+            new IndexBuilder(this::openSession, indexThreads).build(IndexBuilder.fromGraph(graph));
+        } finally {
+            db.activateOnCurrentThread();
+        }
+    }
+}
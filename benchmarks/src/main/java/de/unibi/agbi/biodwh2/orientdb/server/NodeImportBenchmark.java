@@ -0,0 +1,11 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class NodeImportBenchmark extends AbstractImportBenchmark {
+    @Benchmark
+    public long importNodes() throws InterruptedException {
+        super.importNodes();
+        return nodeIdOrientDBIdMap.size();
+    }
+}
@@ -0,0 +1,94 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.db.OrientDBInternal;
+import com.orientechnologies.orient.core.record.OVertex;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyConversionBenchmark {
+    @Param({"SCALAR", "LIST", "MIXED"})
+    public SyntheticGraph.PropertyShape shape;
+
+    private Path directory;
+    private Graph graph;
+    private OrientDB orientDB;
+    private ODatabaseDocumentInternal db;
+    private Node node;
+    private PropertyWriter propertyWriter;
+    private OVertex vertex;
+    private List<String> strings;
+    private List<Integer> integers;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("biodwh2-orientdb-benchmark");
+        final Path graphFilePath = directory.resolve("mapped.db");
+        SyntheticGraph.create(graphFilePath, 1, 0, 1, shape);
+        graph = new Graph(graphFilePath, true);
+        final String label = SyntheticGraph.getNodeLabel(0);
+        node = graph.getNodes(label).iterator().next();
+        propertyWriter = PropertyWriter.forNodeLabel(graph, label);
+        orientDB = new OrientDB("memory:", OrientDBConfig.defaultConfig());
+        final OrientDBInternal context = OrientDBInternal.extract(orientDB);
+        context.create("benchmark", null, null, ODatabaseType.MEMORY, OrientDBConfig.defaultConfig());
+        db = context.openNoAuthenticate("benchmark", null);
+        OrientDBService.createNodeClasses(db, graph, graph.getNodeLabels(), new ImportOptions());
+        vertex = db.newVertex(db.getClass(label));
+        final Random random = new Random(42);
+        strings = SyntheticGraph.createStringList(random);
+        integers = SyntheticGraph.createIntegerList(random);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.activateOnCurrentThread();
+        db.close();
+        orientDB.close();
+        graph.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Benchmark
+    public void convertStringCollectionToArray(final Blackhole blackhole) {
+        blackhole.consume(PropertyUtils.convertCollectionToArray(strings));
+    }
+
+    @Benchmark
+    public void convertIntegerCollectionToArray(final Blackhole blackhole) {
+        blackhole.consume(PropertyUtils.convertCollectionToArray(integers));
+    }
+
+    @Benchmark
+    public OVertex setPropertySafe() {
+        for (final String propertyKey : node.keySet())
+            PropertyUtils.setPropertySafe(node, vertex, propertyKey);
+        return vertex;
+    }
+
+    @Benchmark
+    public OVertex propertyWriter() {
+        propertyWriter.write(node, vertex);
+        return vertex;
+    }
+}
@@ -0,0 +1,144 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.IndexDescription;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible BioDWH2 graphs for the benchmarks. Edge labels with an even index carry no properties, all
+ * other labels carry properties of the selected {@link PropertyShape}.
+ */
+final class SyntheticGraph {
+    enum PropertyShape {
+        SCALAR,
+        LIST,
+        MIXED
+    }
+
+    enum Topology {
+        /**
+         * Hub vertices with uniformly distributed neighbors.
+         */
+        SKEWED,
+        /**
+         * Small communities of densely connected vertices whose members are scattered across the insertion order, so
+         * traversals only stay on few pages if the import reorders the vertices.
+         */
+        COMMUNITIES
+    }
+
+    private static final int COMMUNITY_SIZE = 32;
+    private static final double INTRA_COMMUNITY_EDGE_RATIO = 0.9;
+
+    private static final long SEED = 42;
+
+    private SyntheticGraph() {
+    }
+
+    static void create(final Path filePath, final int nodeCount, final int edgeCount, final int labelCount,
+                       final PropertyShape shape) {
+        create(filePath, nodeCount, edgeCount, labelCount, shape, Topology.SKEWED);
+    }
+
+    static void create(final Path filePath, final int nodeCount, final int edgeCount, final int labelCount,
+                       final PropertyShape shape, final Topology topology) {
+        final Random random = new Random(SEED);
+        final long[] nodeIds = new long[nodeCount];
+        try (Graph graph = new Graph(filePath)) {
+            for (int i = 0; i < labelCount; i++)
+                graph.addIndex(IndexDescription.forNode(getNodeLabel(i), "id", IndexDescription.Type.UNIQUE));
+            for (int i = 0; i < nodeCount; i++) {
+                final Node node = graph.addNode(getNodeLabel(i % labelCount));
+                node.setProperty("id", "ID:" + i);
+                setProperties(node, shape, random);
+                graph.update(node);
+                nodeIds[i] = node.getId();
+            }
+            final int[] communityMembers = topology == Topology.COMMUNITIES ? createPermutation(nodeCount, random) :
+                                           null;
+            for (int i = 0; i < edgeCount; i++) {
+                final int labelIndex = i % labelCount;
+                final long fromId;
+                final long toId;
+                if (communityMembers != null && random.nextDouble() < INTRA_COMMUNITY_EDGE_RATIO) {
+                    final int communityStart = random.nextInt((nodeCount + COMMUNITY_SIZE - 1) / COMMUNITY_SIZE) *
+                                               COMMUNITY_SIZE;
+                    final int communitySize = Math.min(COMMUNITY_SIZE, nodeCount - communityStart);
+                    fromId = nodeIds[communityMembers[communityStart + random.nextInt(communitySize)]];
+                    toId = nodeIds[communityMembers[communityStart + random.nextInt(communitySize)]];
+                } else {
+                    // Skewed endpoint selection produces hub vertices similar to real workspaces
+                    fromId = nodeIds[(int) (Math.pow(random.nextDouble(), 3) * nodeCount)];
+                    toId = nodeIds[random.nextInt(nodeCount)];
+                }
+                final Edge edge = graph.addEdge(fromId, toId, getEdgeLabel(labelIndex));
+                if (labelIndex % 2 == 1) {
+                    setProperties(edge, shape, random);
+                    graph.update(edge);
+                }
+            }
+        }
+    }
+
+    private static int[] createPermutation(final int size, final Random random) {
+        final int[] result = new int[size];
+        for (int i = 0; i < size; i++)
+            result[i] = i;
+        for (int i = size - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int value = result[i];
+            result[i] = result[j];
+            result[j] = value;
+        }
+        return result;
+    }
+
+    static String getNodeLabel(final int index) {
+        return "NodeLabel" + index;
+    }
+
+    static String getEdgeLabel(final int index) {
+        return "EDGE_LABEL_" + index;
+    }
+
+    private static void setProperties(final Node node, final PropertyShape shape, final Random random) {
+        if (shape != PropertyShape.LIST) {
+            node.setProperty("name", "name-" + random.nextInt());
+            node.setProperty("score", random.nextDouble());
+            node.setProperty("count", random.nextInt(1000));
+        }
+        if (shape != PropertyShape.SCALAR) {
+            node.setProperty("synonyms", createStringList(random));
+            node.setProperty("xrefs", createIntegerList(random));
+        }
+    }
+
+    private static void setProperties(final Edge edge, final PropertyShape shape, final Random random) {
+        if (shape != PropertyShape.LIST)
+            edge.setProperty("score", random.nextDouble());
+        if (shape != PropertyShape.SCALAR)
+            edge.setProperty("sources", createStringList(random));
+    }
+
+    static List<String> createStringList(final Random random) {
+        final int size = 1 + random.nextInt(8);
+        final List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            result.add("value-" + random.nextInt(100000));
+        return result;
+    }
+
+    static List<Integer> createIntegerList(final Random random) {
+        final int size = 1 + random.nextInt(8);
+        final List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            result.add(random.nextInt());
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.db.OrientDBInternal;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import de.unibi.agbi.biodwh2.orientdb.server.model.VertexOrder;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the traversal latency of the vertex orders on a cold disk cache. The graph is imported once per trial into
+ * a plocal database and every invocation reopens it, so all pages are loaded from disk (or the page cache of the
+ * operating system) again. The disk cache is kept small to make the locality of the pages matter for larger graphs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=8g"})
+public class TraversalBenchmark {
+    private static final String DATABASE_NAME = "traversal";
+    private static final long SEED = 42;
+
+    @Param("200000")
+    public int nodeCount;
+    @Param("1000000")
+    public int edgeCount;
+    @Param({"GRAPH", "BFS", "DEGREE"})
+    public VertexOrder vertexOrder;
+    @Param("200")
+    public int startVertices;
+    @Param("2")
+    public int depth;
+    @Param("64")
+    public int diskCacheSize;
+
+    private Path directory;
+    private final List<ORID> startIds = new ArrayList<>();
+    private OrientDB orientDB;
+    private ODatabaseDocumentInternal db;
+
+    @Setup(Level.Trial)
+    public void setupDatabase() throws Exception {
+        OGlobalConfiguration.DISK_CACHE_SIZE.setValue(diskCacheSize);
+        directory = Files.createTempDirectory("biodwh2-orientdb-benchmark");
+        final Path graphFilePath = directory.resolve("mapped.db");
+        SyntheticGraph.create(graphFilePath, nodeCount, edgeCount, 1, SyntheticGraph.PropertyShape.SCALAR,
+                              SyntheticGraph.Topology.COMMUNITIES);
+        final ImportOptions options = new ImportOptions();
+        options.vertexOrder = vertexOrder;
+        options.maxClusters = 1;
+        try (Graph graph = new Graph(graphFilePath, true);
+             NodeIdRidMap nodeIdOrientDBIdMap = NodeIdRidMap.offHeap(graph.getNumberOfNodes());
+             OrientDB importOrientDB = new OrientDB("embedded:" + directory.resolve("orientdb"),
+                                                    OrientDBConfig.defaultConfig())) {
+            final OrientDBInternal context = OrientDBInternal.extract(importOrientDB);
+            context.create(DATABASE_NAME, null, null, ODatabaseType.PLOCAL, OrientDBConfig.defaultConfig());
+            final ODatabaseDocumentInternal importDb = context.openNoAuthenticate(DATABASE_NAME, null);
+            OrientDBService.createNodeClasses(importDb, graph, graph.getNodeLabels(), options);
+            OrientDBService.createEdgeClasses(importDb, graph, graph.getEdgeLabels(), options);
+            final NodeImporter nodeImporter = new NodeImporter(graph, options, nodeIdOrientDBIdMap,
+                                                               new ImportMetrics());
+            if (vertexOrder != VertexOrder.GRAPH)
+                nodeImporter.setVertexOrdering(VertexOrdering.compute(graph, vertexOrder));
+            try (DatabaseSessionPool pool = new DatabaseSessionPool(
+                    () -> context.openNoAuthenticate(DATABASE_NAME, null), options.workers)) {
+                nodeImporter.importNodes(pool, graph.getNodeLabels());
+            } finally {
+                importDb.activateOnCurrentThread();
+            }
+            new EdgeImporter(graph, options, nodeIdOrientDBIdMap, new ImportMetrics()).importEdges(importDb,
+                                                                                                   graph.getEdgeLabels());
+            // The same start vertices are used for all orders
+            final Random random = new Random(SEED);
+            final List<Node> nodes = new ArrayList<>();
+            for (final Node node : graph.getNodes(SyntheticGraph.getNodeLabel(0)))
+                nodes.add(node);
+            for (int i = 0; i < startVertices; i++)
+                startIds.add(nodeIdOrientDBIdMap.get(nodes.get(random.nextInt(nodes.size())).getId()));
+            importDb.close();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void openDatabase() {
+        orientDB = new OrientDB("embedded:" + directory.resolve("orientdb"), OrientDBConfig.defaultConfig());
+        db = OrientDBInternal.extract(orientDB).openNoAuthenticate(DATABASE_NAME, null);
+    }
+
+    @Benchmark
+    public long traverse() {
+        long visited = 0;
+        for (final ORID startId : startIds)
+            try (OResultSet result = db.query("TRAVERSE both() FROM " + startId + " MAXDEPTH " + depth)) {
+                while (result.hasNext()) {
+                    result.next();
+                    visited++;
+                }
+            }
+        return visited;
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDatabase() {
+        db.close();
+        orientDB.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownDatabase() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+}
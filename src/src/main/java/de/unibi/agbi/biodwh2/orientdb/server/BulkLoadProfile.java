@@ -0,0 +1,81 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Storage settings for importing a database which can be rebuilt from the workspace at any time. The write-ahead log
+ * and file syncs are disabled and the disk cache is sized from the available memory and the size of the source graph.
+ * All settings are global and are restored once the import is finished.
+ */
+final class BulkLoadProfile {
+    private static final Logger LOGGER = LogManager.getLogger(BulkLoadProfile.class);
+    private static final long MB = 1024 * 1024;
+    private static final long MIN_DISK_CACHE_SIZE = 256 * MB;
+    private static final long RESERVED_MEMORY = 2048 * MB;
+    /**
+     * The OrientDB storage of a workspace is usually larger than its mapped.db, so the cache is given room to hold
+     * twice the source graph size.
+     */
+    private static final int SOURCE_SIZE_FACTOR = 2;
+
+    private final Map<OGlobalConfiguration, Object> previousValues = new EnumMap<>(OGlobalConfiguration.class);
+
+    private BulkLoadProfile() {
+    }
+
+    static BulkLoadProfile apply(final Path sourceGraphPath) {
+        final BulkLoadProfile profile = new BulkLoadProfile();
+        final long diskCacheSize = getDiskCacheSize(sourceGraphPath);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Using bulk-load storage profile with {} MB disk cache and disabled WAL", diskCacheSize / MB);
+        profile.set(OGlobalConfiguration.DISK_CACHE_SIZE, diskCacheSize / MB);
+        profile.set(OGlobalConfiguration.USE_WAL, false);
+        profile.set(OGlobalConfiguration.WAL_SYNC_ON_PAGE_FLUSH, false);
+        profile.set(OGlobalConfiguration.STORAGE_CONFIGURATION_SYNC_ON_UPDATE, false);
+        return profile;
+    }
+
+    private static long getDiskCacheSize(final Path sourceGraphPath) {
+        long sourceGraphSize;
+        try {
+            sourceGraphSize = Files.size(sourceGraphPath);
+        } catch (IOException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to determine size of source graph '{}'", sourceGraphPath, e);
+            sourceGraphSize = 0;
+        }
+        final long availableMemory = getPhysicalMemory() - Runtime.getRuntime().maxMemory() - RESERVED_MEMORY;
+        final long requiredMemory = Math.max(MIN_DISK_CACHE_SIZE, sourceGraphSize * SOURCE_SIZE_FACTOR);
+        return Math.max(MIN_DISK_CACHE_SIZE, Math.min(requiredMemory, availableMemory));
+    }
+
+    private static long getPhysicalMemory() {
+        final OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) bean).getTotalPhysicalMemorySize();
+        return Runtime.getRuntime().maxMemory() * 2;
+    }
+
+    private void set(final OGlobalConfiguration key, final Object value) {
+        previousValues.putIfAbsent(key, key.getValue());
+        key.setValue(value);
+    }
+
+    void restore() {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Restoring durable storage settings...");
+        for (final Map.Entry<OGlobalConfiguration, Object> entry : previousValues.entrySet())
+            entry.getKey().setValue(entry.getValue());
+        previousValues.clear();
+    }
+}
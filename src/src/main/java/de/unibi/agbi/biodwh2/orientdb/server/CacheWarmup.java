@@ -0,0 +1,184 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.ORecord;
+import de.unibi.agbi.biodwh2.orientdb.server.model.WarmupPlan;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Loads index and cluster pages into the OrientDB disk cache before the server accepts connections, so the first
+ * queries after a start do not pay for cold disk reads. The plan lists the indices and hot classes to warm in order of
+ * priority. Entries are warmed as long as their estimated size fits the memory budget, as warming more than the disk
+ * cache holds would only evict the pages loaded before.
+ * <p>
+ * The plan is stored next to the database and reused by later starts unless other hot classes are requested.
+ */
+final class CacheWarmup {
+    private static final Logger LOGGER = LogManager.getLogger(CacheWarmup.class);
+    private static final String LUCENE_ALGORITHM = "LUCENE";
+
+    private final Supplier<ODatabaseDocumentInternal> sessionSupplier;
+    private final Path storagePath;
+    private final Path planFilePath;
+    private final int threads;
+
+    CacheWarmup(final Supplier<ODatabaseDocumentInternal> sessionSupplier, final Path storagePath,
+                final Path planFilePath, final int threads) {
+        this.sessionSupplier = sessionSupplier;
+        this.storagePath = storagePath;
+        this.planFilePath = planFilePath;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns the stored plan, or a new plan of all indices and the given hot classes if classes are given or no plan
+     * was stored yet.
+     */
+    WarmupPlan getPlan(final List<String> hotClasses) throws IOException {
+        if ((hotClasses == null || hotClasses.isEmpty()) && Files.exists(planFilePath))
+            return new ObjectMapper().readValue(planFilePath.toFile(), WarmupPlan.class);
+        final WarmupPlan plan = new WarmupPlan();
+        final ODatabaseDocumentInternal db = sessionSupplier.get();
+        try {
+            for (final OIndex index : db.getMetadata().getIndexManagerInternal().getIndexes(db))
+                if (!LUCENE_ALGORITHM.equalsIgnoreCase(index.getAlgorithm()))
+                    plan.indices.add(index.getName());
+            if (hotClasses != null)
+                for (final String label : hotClasses)
+                    if (db.getMetadata().getSchema().existsClass(label))
+                        plan.classes.add(label);
+                    else if (LOGGER.isWarnEnabled())
+                        LOGGER.warn("Ignoring undefined warm-up class '{}'", label);
+        } finally {
+            db.close();
+        }
+        final ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(planFilePath.toFile(), plan);
+        return plan;
+    }
+
+    /**
+     * Warms the entries of the plan which fit the memory budget in parallel and returns the estimated number of bytes
+     * loaded.
+     */
+    long warm(final WarmupPlan plan, final long memoryBudget) throws InterruptedException {
+        final List<Runnable> tasks = new ArrayList<>();
+        final AtomicLong records = new AtomicLong();
+        long estimatedBytes = 0;
+        final ODatabaseDocumentInternal db = sessionSupplier.get();
+        try {
+            for (final String indexName : plan.indices) {
+                final long size = getIndexFileSize(indexName);
+                if (db.getMetadata().getIndexManagerInternal().getIndex(db, indexName) == null ||
+                    estimatedBytes + size > memoryBudget)
+                    continue;
+                estimatedBytes += size;
+                tasks.add(() -> warmIndex(indexName, records));
+            }
+            for (final String label : plan.classes) {
+                final OClass definition = db.getMetadata().getSchema().getClass(label);
+                if (definition == null)
+                    continue;
+                for (final int clusterId : definition.getClusterIds()) {
+                    final long size = db.getClusterRecordSizeById(clusterId);
+                    if (estimatedBytes + size > memoryBudget)
+                        continue;
+                    estimatedBytes += size;
+                    final String clusterName = db.getClusterNameById(clusterId);
+                    tasks.add(() -> warmCluster(clusterName, records));
+                }
+            }
+        } finally {
+            db.close();
+        }
+        if (tasks.isEmpty())
+            return 0;
+        final long start = System.currentTimeMillis();
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Warming up {} indices and clusters (about {} MB) with {} threads...", tasks.size(),
+                        estimatedBytes / (1024 * 1024), Math.min(threads, tasks.size()));
+        run(tasks);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Warmed up {} entries in {} ms", records.get(), System.currentTimeMillis() - start);
+        return estimatedBytes;
+    }
+
+    private void run(final Collection<Runnable> tasks) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            for (final Runnable task : tasks)
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        if (LOGGER.isWarnEnabled())
+                            LOGGER.warn("Failed to warm up cache entry", e);
+                    }
+                });
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void warmIndex(final String indexName, final AtomicLong records) {
+        final ODatabaseDocumentInternal db = sessionSupplier.get();
+        try (Stream<ORawPair<Object, ORID>> entries = db.getMetadata().getIndexManagerInternal().getIndex(db,
+                                                                                                           indexName)
+                                                        .getInternal().stream()) {
+            records.addAndGet(entries.count());
+        } finally {
+            db.close();
+        }
+    }
+
+    private void warmCluster(final String clusterName, final AtomicLong records) {
+        final ODatabaseDocumentInternal db = sessionSupplier.get();
+        try {
+            long count = 0;
+            for (final ORecord ignored : db.<ORecord>browseCluster(clusterName))
+                count++;
+            records.addAndGet(count);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * OrientDB stores every index in files named after the index, so their size approximates the pages to load.
+     */
+    private long getIndexFileSize(final String indexName) {
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storagePath, indexName + ".*")) {
+            for (final Path file : files)
+                size += Files.size(file);
+        } catch (IOException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to determine the size of index '{}'", indexName, e);
+        }
+        return size;
+    }
+}
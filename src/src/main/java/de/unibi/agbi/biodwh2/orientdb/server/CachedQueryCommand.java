@@ -0,0 +1,212 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.serialization.serializer.OJSONWriter;
+import com.orientechnologies.orient.core.sql.OCommandSQLParsingException;
+import com.orientechnologies.orient.core.sql.OSQLEngine;
+import com.orientechnologies.orient.core.sql.executor.OResult;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.orient.server.OServer;
+import com.orientechnologies.orient.server.config.OServerCommandConfiguration;
+import com.orientechnologies.orient.server.config.OServerEntryConfiguration;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpRequest;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpResponse;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpUtils;
+import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommandAuthenticatedDbAbstract;
+import com.orientechnologies.orient.server.network.protocol.http.command.get.OServerCommandGetQuery;
+import com.orientechnologies.orient.server.network.protocol.http.command.post.OServerCommandPostCommand;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the SQL query commands of the REST API used by Studio ({@code GET /query} and {@code POST /command}) with
+ * versions answering idempotent statements from a {@link QueryResultCache}. Statements which are not idempotent, other
+ * languages, fetch plans, CSV and streamed responses and the graph mode of Studio are passed on to the original
+ * OrientDB commands. As these may write to the database, they invalidate the cache.
+ * <p>
+ * Responses are serialized like {@link OHttpResponse#writeRecords}, so cached and uncached responses have the same
+ * format as the responses of the original commands.
+ */
+public class CachedQueryCommand extends OServerCommandAuthenticatedDbAbstract {
+    static final String[] PATTERNS = {"GET|query/*", "POST|command/*"};
+    static final String SIZE_PARAMETER = "size";
+    /**
+     * Prefix of the parameters naming the workspace checksum file of each database, such as
+     * {@code checksumFile:BioDWH2}.
+     */
+    static final String CHECKSUM_FILE_PARAMETER_PREFIX = "checksumFile:";
+    private static final String SQL = "sql";
+    private static final int DEFAULT_QUERY_LIMIT = 20;
+
+    private final OServerCommandGetQuery queryCommand = new OServerCommandGetQuery();
+    private final OServerCommandPostCommand postCommand = new OServerCommandPostCommand();
+    private final QueryResultCache cache;
+
+    public CachedQueryCommand(final OServerCommandConfiguration configuration) {
+        long size = 0;
+        final Map<String, Path> checksumFiles = new HashMap<>();
+        for (final OServerEntryConfiguration parameter : configuration.parameters)
+            if (SIZE_PARAMETER.equals(parameter.name))
+                size = Long.parseLong(parameter.value);
+            else if (parameter.name.startsWith(CHECKSUM_FILE_PARAMETER_PREFIX))
+                checksumFiles.put(parameter.name.substring(CHECKSUM_FILE_PARAMETER_PREFIX.length()),
+                                  Paths.get(parameter.value));
+        cache = new QueryResultCache(size, checksumFiles);
+        cache.register();
+    }
+
+    @Override
+    public String[] getNames() {
+        return PATTERNS;
+    }
+
+    @Override
+    public void configure(final OServer server) {
+        super.configure(server);
+        queryCommand.configure(server);
+        postCommand.configure(server);
+    }
+
+    @Override
+    public boolean execute(final OHttpRequest iRequest, final OHttpResponse iResponse) throws Exception {
+        final boolean isQuery = OHttpUtils.METHOD_GET.equals(iRequest.getHttpMethod());
+        final String[] urlParts = checkSyntax(iRequest.getUrl(), 3,
+                                              "Syntax error: query|command/<database>/<language>/<text>[/<limit>]");
+        final Statement statement = isQuery ? parseQuery(urlParts) : parseCommand(iRequest, urlParts);
+        if (statement == null || !SQL.equalsIgnoreCase(urlParts[2]) || !isCacheableResponse(iRequest))
+            return delegate(isQuery, iRequest, iResponse);
+        final ODatabaseDocumentInternal db = (ODatabaseDocumentInternal) getProfiledDatabaseInstance(iRequest);
+        try {
+            final boolean idempotent;
+            try {
+                idempotent = OSQLEngine.parse(statement.text, db).isIdempotent();
+            } catch (OCommandSQLParsingException e) {
+                iResponse.send(OHttpUtils.STATUS_BADREQ_CODE, OHttpUtils.STATUS_BADREQ_DESCRIPTION,
+                               OHttpUtils.CONTENT_TEXT_PLAIN, e.getMessage(), null);
+                return false;
+            }
+            if (!idempotent) {
+                db.close();
+                cache.invalidate();
+                return delegate(isQuery, iRequest, iResponse);
+            }
+            final String key = db.getUser().getName() + '\n' + statement.limit + '\n' +
+                               new ObjectMapper().writeValueAsString(statement.parameters) + '\n' + statement.text;
+            String result = cache.get(db.getName(), key);
+            if (result == null) {
+                iRequest.getData().commandInfo = "Query";
+                iRequest.getData().commandDetail = statement.text;
+                result = executeQuery(iResponse, db, statement);
+                cache.put(db.getName(), key, result);
+            }
+            iResponse.send(OHttpUtils.STATUS_OK_CODE, OHttpUtils.STATUS_OK_DESCRIPTION, OHttpUtils.CONTENT_JSON, result,
+                           null);
+        } finally {
+            if (!db.isClosed())
+                db.close();
+        }
+        return false;
+    }
+
+    private boolean delegate(final boolean isQuery, final OHttpRequest iRequest,
+                             final OHttpResponse iResponse) throws Exception {
+        return isQuery ? queryCommand.execute(iRequest, iResponse) : postCommand.execute(iRequest, iResponse);
+    }
+
+    /**
+     * CSV and streamed responses are written differently by the original commands and are not cached.
+     */
+    private static boolean isCacheableResponse(final OHttpRequest iRequest) {
+        final String accept = iRequest.getHeader("accept");
+        return (accept == null || !accept.contains("text/csv")) && iRequest.getHeader("TE") == null;
+    }
+
+    private static final class Statement {
+        String text;
+        int limit;
+        Object parameters;
+    }
+
+    /**
+     * Parses {@code query/<database>/<language>/<text>[/<limit>]}. Queries with a fetch plan are not cached.
+     */
+    private static Statement parseQuery(final String[] urlParts) {
+        if (urlParts.length < 4 || urlParts.length > 5)
+            return null;
+        final Statement statement = new Statement();
+        statement.text = urlParts[3].trim();
+        statement.limit = urlParts.length > 4 ? Integer.parseInt(urlParts[4]) : DEFAULT_QUERY_LIMIT;
+        statement.parameters = Collections.emptyMap();
+        return statement;
+    }
+
+    /**
+     * Parses {@code command/<database>/<language>[/<text>[/<limit>]]} with the statement either in the URL or in the
+     * body as text or as Studio's JSON object. Requests for the graph mode or with a fetch plan are not cached.
+     */
+    @SuppressWarnings("unchecked")
+    private static Statement parseCommand(final OHttpRequest iRequest, final String[] urlParts) throws Exception {
+        if (urlParts.length > 5)
+            return null;
+        final Statement statement = new Statement();
+        statement.text = urlParts.length > 3 ? urlParts[3] : null;
+        statement.limit = urlParts.length > 4 ? Integer.parseInt(urlParts[4]) : -1;
+        statement.parameters = Collections.emptyMap();
+        final String content = iRequest.getContent();
+        if (StringUtils.isNotBlank(content)) {
+            if (content.trim().startsWith("{")) {
+                final Map<String, Object> body = new ObjectMapper().readValue(content, Map.class);
+                final Object mode = body.get("mode");
+                if (mode != null && !"resultset".equalsIgnoreCase(mode.toString()))
+                    return null;
+                if (body.get("command") != null)
+                    statement.text = body.get("command").toString();
+                final Object parameters = body.get("parameters");
+                if (parameters instanceof List || parameters instanceof Map)
+                    statement.parameters = parameters;
+                else if (parameters != null)
+                    return null;
+            } else
+                statement.text = content;
+        }
+        if (StringUtils.isBlank(statement.text) || iRequest.getParameter("fetchPlan") != null)
+            return null;
+        statement.text = statement.text.trim();
+        return statement;
+    }
+
+    private static String executeQuery(final OHttpResponse iResponse, final ODatabaseDocumentInternal db,
+                                       final Statement statement) throws IOException {
+        final List<OResult> results = new ArrayList<>();
+        final Map<String, Object> additionalContent = new LinkedHashMap<>();
+        try (OResultSet resultSet = statement.parameters instanceof List ?
+                                    db.query(statement.text, ((List<?>) statement.parameters).toArray()) :
+                                    db.query(statement.text, (Map<?, ?>) statement.parameters)) {
+            while (resultSet.hasNext() && (statement.limit < 0 || results.size() < statement.limit))
+                results.add(resultSet.next());
+            resultSet.getExecutionPlan().ifPresent(
+                    plan -> additionalContent.put("executionPlan", plan.toResult().toElement()));
+        }
+        final StringWriter buffer = new StringWriter();
+        final OJSONWriter json = new OJSONWriter(buffer, OHttpResponse.JSON_FORMAT);
+        json.beginObject();
+        json.beginCollection(-1, true, "result");
+        iResponse.formatMultiValue(results.iterator(), buffer, OHttpResponse.JSON_FORMAT);
+        json.endCollection(-1, true);
+        for (final Map.Entry<String, Object> entry : additionalContent.entrySet())
+            json.writeAttribute(entry.getKey(), entry.getValue());
+        json.endObject();
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Fixed size pool of database sessions. OrientDB sessions are bound to the thread which activated them last, so every
+ * session handed out by {@link #acquire()} is activated on the calling thread.
+ */
+final class DatabaseSessionPool implements AutoCloseable {
+    private final List<ODatabaseDocumentInternal> sessions;
+    private final BlockingQueue<ODatabaseDocumentInternal> availableSessions;
+
+    DatabaseSessionPool(final Supplier<ODatabaseDocumentInternal> sessionSupplier, final int size) {
+        sessions = new ArrayList<>(size);
+        availableSessions = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            final ODatabaseDocumentInternal session = sessionSupplier.get();
+            sessions.add(session);
+            availableSessions.add(session);
+        }
+    }
+
+    ODatabaseDocumentInternal acquire() throws InterruptedException {
+        final ODatabaseDocumentInternal session = availableSessions.take();
+        session.activateOnCurrentThread();
+        return session;
+    }
+
+    void release(final ODatabaseDocumentInternal session) {
+        availableSessions.add(session);
+    }
+
+    @Override
+    public void close() {
+        for (final ODatabaseDocumentInternal session : sessions) {
+            session.activateOnCurrentThread();
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Packs the files of a database into a single archive and unpacks it again. Every file is split into chunks of
+ * {@value #CHUNK_SIZE} bytes which are compressed and decompressed in parallel, while the archive itself is written and
+ * read sequentially. Each chunk is stored with its offset and a CRC32 of the uncompressed content, so restoring writes
+ * the chunks at their offsets in any order and detects corrupt archives.
+ * <p>
+ * The database must not be open while a snapshot is created.
+ */
+final class DatabaseSnapshot {
+    private static final Logger LOGGER = LogManager.getLogger(DatabaseSnapshot.class);
+    private static final long MAGIC = 0x42494f4457483253L;
+    private static final int VERSION = 1;
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final class Chunk {
+        final int fileIndex;
+        final long offset;
+        final int length;
+        final long crc;
+        final byte[] compressed;
+
+        Chunk(final int fileIndex, final long offset, final int length, final long crc, final byte[] compressed) {
+            this.fileIndex = fileIndex;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            this.compressed = compressed;
+        }
+    }
+
+    private DatabaseSnapshot() {
+    }
+
+    /**
+     * Packs the given files and all files of the given directories relative to {@code baseDirectory} into the archive.
+     * Paths which do not exist are skipped.
+     */
+    static void create(final Path baseDirectory, final List<Path> paths, final Path archiveFilePath,
+                       final int threads) throws IOException, InterruptedException {
+        final List<Path> files = new ArrayList<>();
+        for (final Path path : paths)
+            if (Files.isDirectory(path))
+                try (Stream<Path> stream = Files.walk(path)) {
+                    files.addAll(stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                }
+            else if (Files.isRegularFile(path))
+                files.add(path);
+        final long start = System.currentTimeMillis();
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Creating snapshot of {} files with {} threads...", files.size(), threads);
+        final Path temporaryFilePath = archiveFilePath.resolveSibling(archiveFilePath.getFileName() + ".tmp");
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryFilePath), 1024 * 1024))) {
+            output.writeLong(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(files.size());
+            for (final Path file : files) {
+                output.writeUTF(baseDirectory.relativize(file).toString().replace('\\', '/'));
+                output.writeLong(Files.size(file));
+            }
+            // Chunks are compressed ahead by the workers while the oldest chunk is written
+            final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+            for (int i = 0; i < files.size(); i++) {
+                final int fileIndex = i;
+                final long size = Files.size(files.get(i));
+                for (long offset = 0; offset < size; offset += CHUNK_SIZE) {
+                    final long chunkOffset = offset;
+                    final int length = (int) Math.min(CHUNK_SIZE, size - offset);
+                    pending.add(executor.submit(() -> compressChunk(files.get(fileIndex), fileIndex, chunkOffset,
+                                                                    length)));
+                    if (pending.size() >= threads * 2)
+                        writeChunk(output, pending.poll().get());
+                }
+            }
+            while (!pending.isEmpty())
+                writeChunk(output, pending.poll().get());
+            output.writeInt(-1);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress snapshot chunk", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        Files.move(temporaryFilePath, archiveFilePath, StandardCopyOption.REPLACE_EXISTING);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Created snapshot '{}' ({} MB) in {} ms", archiveFilePath,
+                        Files.size(archiveFilePath) / (1024 * 1024), System.currentTimeMillis() - start);
+    }
+
+    private static Chunk compressChunk(final Path file, final int fileIndex, final long offset,
+                                       final int length) throws IOException {
+        final byte[] content = new byte[length];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining())
+                if (channel.read(buffer, offset + buffer.position()) < 0)
+                    throw new IOException("File '" + file + "' changed while creating the snapshot");
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            final byte[] buffer = new byte[getMaxCompressedLength(length)];
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == buffer.length)
+                    throw new IOException("Snapshot chunk of '" + file + "' did not compress");
+                compressedLength += deflater.deflate(buffer, compressedLength, buffer.length - compressedLength);
+            }
+            final byte[] compressed = new byte[compressedLength];
+            System.arraycopy(buffer, 0, compressed, 0, compressedLength);
+            return new Chunk(fileIndex, offset, length, crc.getValue(), compressed);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(final DataOutputStream output, final Chunk chunk) throws IOException {
+        output.writeInt(chunk.fileIndex);
+        output.writeLong(chunk.offset);
+        output.writeInt(chunk.length);
+        output.writeLong(chunk.crc);
+        output.writeInt(chunk.compressed.length);
+        output.write(chunk.compressed);
+    }
+
+    /**
+     * Unpacks the archive into {@code baseDirectory}. Existing files of the archive are replaced. Nothing is written
+     * before the archive header was read, and every chunk is checked against the file table before it is decompressed.
+     */
+    static void restore(final Path archiveFilePath, final Path baseDirectory,
+                        final int threads) throws IOException, InterruptedException {
+        final Path directory = baseDirectory.toAbsolutePath().normalize();
+        final long start = System.currentTimeMillis();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Semaphore inFlight = new Semaphore(threads * 2);
+        final List<Future<?>> futures = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(archiveFilePath), 1024 * 1024))) {
+            if (input.readLong() != MAGIC || input.readInt() != VERSION)
+                throw new IOException("'" + archiveFilePath + "' is not a database snapshot");
+            final int fileCount = input.readInt();
+            if (fileCount < 0)
+                throw new IOException("Snapshot '" + archiveFilePath + "' has an invalid file count");
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Restoring {} files from snapshot '{}' with {} threads...", fileCount, archiveFilePath,
+                            threads);
+            final List<Path> files = new ArrayList<>();
+            final long[] sizes = new long[fileCount];
+            final long[] restoredBytes = new long[fileCount];
+            for (int i = 0; i < fileCount; i++) {
+                final Path file = directory.resolve(input.readUTF()).normalize();
+                if (!file.startsWith(directory))
+                    throw new IOException("Snapshot entry '" + file + "' is outside of '" + directory + "'");
+                sizes[i] = input.readLong();
+                if (sizes[i] < 0)
+                    throw new IOException("Snapshot entry '" + file + "' has an invalid size");
+                files.add(file);
+            }
+            // The files are only opened per chunk, as a database may consist of more files than can be open at once
+            for (int i = 0; i < fileCount; i++)
+                createFile(files.get(i), sizes[i]);
+            while (true) {
+                final int fileIndex = input.readInt();
+                if (fileIndex < 0)
+                    break;
+                final long offset = input.readLong();
+                final int length = input.readInt();
+                final long crc = input.readLong();
+                final int compressedLength = input.readInt();
+                if (fileIndex >= fileCount || length <= 0 || length > CHUNK_SIZE || offset < 0 ||
+                    offset > sizes[fileIndex] - length || compressedLength < 0 ||
+                    compressedLength > getMaxCompressedLength(length))
+                    throw new IOException("Snapshot '" + archiveFilePath + "' contains an invalid chunk");
+                final byte[] compressed = new byte[compressedLength];
+                input.readFully(compressed);
+                restoredBytes[fileIndex] += length;
+                final Path file = files.get(fileIndex);
+                inFlight.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        writeChunk(file, offset, decompressChunk(compressed, length, crc));
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures)
+                future.get();
+            for (int i = 0; i < fileCount; i++) {
+                if (restoredBytes[i] != sizes[i])
+                    throw new IOException("Snapshot entry '" + files.get(i) + "' is incomplete");
+                try (FileChannel channel = FileChannel.open(files.get(i), StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to restore snapshot chunk", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Restored snapshot in {} ms", System.currentTimeMillis() - start);
+    }
+
+    private static int getMaxCompressedLength(final int length) {
+        return length + length / 1000 + 64;
+    }
+
+    private static void createFile(final Path file, final long size) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (size > 0)
+                channel.write(ByteBuffer.allocate(1), size - 1);
+        }
+    }
+
+    private static byte[] decompressChunk(final byte[] compressed, final int length,
+                                          final long crc) throws DataFormatException, IOException {
+        final byte[] content = new byte[length];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int contentLength = 0;
+            while (contentLength < length && !inflater.finished()) {
+                final int inflated = inflater.inflate(content, contentLength, length - contentLength);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                contentLength += inflated;
+            }
+            if (contentLength != length)
+                throw new IOException("Snapshot chunk is truncated");
+        } finally {
+            inflater.end();
+        }
+        final CRC32 actualCrc = new CRC32();
+        actualCrc.update(content);
+        if (actualCrc.getValue() != crc)
+            throw new IOException("Snapshot chunk is corrupt");
+        return content;
+    }
+
+    private static void writeChunk(final Path file, final long offset, final byte[] content) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining())
+                channel.write(buffer, offset + buffer.position());
+        }
+    }
+}
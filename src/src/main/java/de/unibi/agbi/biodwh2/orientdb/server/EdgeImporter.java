@@ -0,0 +1,298 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OImmutableSchema;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.OVertex;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Imports the edges of all labels in transactions of {@link ImportOptions#batchSize} edges. The edges of a batch are
+ * sorted by their source and target vertices and every vertex is loaded only once per batch, so the ridbag of a hub
+ * vertex is written once per transaction instead of once per incident edge.
+ * <p>
+ * The edges of labels without properties are sorted across the whole label before they are batched, so all edges of a
+ * source vertex end up in as few transactions as possible. Only their packed record ids are kept for the sort, up to
+ * about 40 bytes per edge while the label is sorted. Labels with properties, or with more than
+ * {@value #MAX_SORTED_LABEL_EDGES} edges, are only sorted per batch, as their edges would have to be held in memory or
+ * read again.
+ * <p>
+ * If {@link ImportOptions#lightweightEdges} is enabled, labels without any properties are stored as lightweight edges
+ * which link the vertices directly without a separate edge record.
+ */
+final class EdgeImporter {
+    private static final Logger LOGGER = LogManager.getLogger(EdgeImporter.class);
+    private static final int MAX_SORTED_LABEL_EDGES = 100_000_000;
+
+    /**
+     * Edge to be created between two vertices. The source edge is null for edges of labels without properties.
+     */
+    private static final class PendingEdge {
+        final Edge edge;
+        final ORID fromId;
+        final ORID toId;
+
+        PendingEdge(final Edge edge, final ORID fromId, final ORID toId) {
+            this.edge = edge;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+    }
+
+    private static final Comparator<PendingEdge> LOCALITY_ORDER = Comparator.<PendingEdge, ORID>comparing(
+            e -> e.fromId).thenComparing(e -> e.toId);
+
+    private final Graph graph;
+    private final ImportOptions options;
+    private final NodeIdRidMap nodeIdOrientDBIdMap;
+    private final ImportMetrics metrics;
+    private final Map<String, PropertyWriter> propertyWriters = new HashMap<>();
+    private ImportPipeline.LabelListener labelListener;
+    private final Map<String, Set<Integer>> endpointClusterIds = new ConcurrentHashMap<>();
+
+    EdgeImporter(final Graph graph, final ImportOptions options, final NodeIdRidMap nodeIdOrientDBIdMap,
+                 final ImportMetrics metrics) {
+        this.graph = graph;
+        this.options = options;
+        this.nodeIdOrientDBIdMap = nodeIdOrientDBIdMap;
+        this.metrics = metrics;
+        for (final String label : graph.getEdgeLabels())
+            propertyWriters.put(label, PropertyWriter.forEdgeLabel(graph, label));
+    }
+
+    void setLabelListener(final ImportPipeline.LabelListener labelListener) {
+        this.labelListener = labelListener;
+    }
+
+    void importEdges(final ODatabaseDocumentInternal db, final String[] labels) throws InterruptedException {
+        final Set<String> lightweightLabels = new HashSet<>();
+        if (options.lightweightEdges)
+            for (final String label : labels)
+                if (propertyWriters.get(label).isEmpty())
+                    lightweightLabels.add(label);
+        final Map<String, Long> labelEdges = new HashMap<>();
+        final long start = System.currentTimeMillis();
+        // Edges are written by a single writer as concurrent transactions would conflict on shared vertices
+        final ImportPipeline<PendingEdge> pipeline = new ImportPipeline<>("edges", options.workers * 2);
+        pipeline.setLabelListener(labelListener);
+        pipeline.setProgressListener(metrics::sampleMemory);
+        try {
+            pipeline.run(labels, options.readers,
+                         (label, sink) -> readEdges(labels, label, lightweightLabels.contains(label), sink), 1,
+                         batch -> {
+                             metrics.startEdgeLabel(batch.label);
+                             db.activateOnCurrentThread();
+                             importBatch(db, db.getClass(batch.label), propertyWriters.get(batch.label),
+                                         batch.items, lightweightLabels.contains(batch.label));
+                             labelEdges.merge(batch.label, (long) batch.items.size(), Long::sum);
+                             collectEndpointClusterIds(batch);
+                             metrics.recordEdges(batch.label, batch.items.size());
+                         });
+        } finally {
+            db.activateOnCurrentThread();
+        }
+        long totalEdges = 0;
+        long lightweightEdges = 0;
+        for (final String label : labels) {
+            final long count = labelEdges.getOrDefault(label, 0L);
+            totalEdges += count;
+            if (lightweightLabels.contains(label))
+                lightweightEdges += count;
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Created {} edges with label '{}'", count, label);
+        }
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Created {} edges ({} edges/s)", totalEdges, getRate(totalEdges, start));
+        if (options.lightweightEdges && LOGGER.isInfoEnabled())
+            LOGGER.info("Stored {}/{} labels as lightweight edges, {} of {} edge records were not created",
+                        lightweightLabels.size(), labels.length, lightweightEdges, totalEdges);
+    }
+
+    private void collectEndpointClusterIds(final ImportPipeline.Batch<PendingEdge> batch) {
+        final Set<Integer> clusterIds = endpointClusterIds.computeIfAbsent(batch.label, k -> new HashSet<>());
+        int lastFromClusterId = -1;
+        int lastToClusterId = -1;
+        for (final PendingEdge edge : batch.items) {
+            if (edge.fromId.getClusterId() != lastFromClusterId) {
+                lastFromClusterId = edge.fromId.getClusterId();
+                clusterIds.add(lastFromClusterId);
+            }
+            if (edge.toId.getClusterId() != lastToClusterId) {
+                lastToClusterId = edge.toId.getClusterId();
+                clusterIds.add(lastToClusterId);
+            }
+        }
+    }
+
+    /**
+     * Returns the vertex classes which the edges of each imported label connect.
+     */
+    Map<String, List<String>> getEndpointLabels(final OImmutableSchema schema) {
+        final Map<String, List<String>> result = new HashMap<>();
+        for (final String label : endpointClusterIds.keySet())
+            result.put(label, getEndpointLabels(schema, label));
+        return result;
+    }
+
+    /**
+     * Returns the vertex classes which the edges of the label connect. As the endpoint clusters are collected by the
+     * writer, this has to be called from the writer thread or after the import.
+     */
+    List<String> getEndpointLabels(final OImmutableSchema schema, final String label) {
+        final Set<String> labels = new TreeSet<>();
+        for (final int clusterId : endpointClusterIds.getOrDefault(label, Collections.emptySet())) {
+            final OClass definition = schema.getClassByClusterId(clusterId);
+            if (definition != null)
+                labels.add(definition.getName());
+        }
+        return new ArrayList<>(labels);
+    }
+
+    private static long getRate(final long count, final long start) {
+        return count * 1000 / Math.max(1, System.currentTimeMillis() - start);
+    }
+
+    private void readEdges(final String[] labels, final String label, final boolean lightweight,
+                           final ImportPipeline.Sink<PendingEdge> sink) throws InterruptedException {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Creating {}edges with label '{}' ({}/{})...", lightweight ? "lightweight " : "", label,
+                        ArrayUtils.indexOf(labels, label) + 1, labels.length);
+        if (propertyWriters.get(label).isEmpty() && readSortedEdges(label, sink))
+            return;
+        List<PendingEdge> batch = new ArrayList<>(options.batchSize);
+        for (final Edge edge : graph.getEdges(label)) {
+            final ORID fromId = nodeIdOrientDBIdMap.get(edge.getFromId());
+            final ORID toId = nodeIdOrientDBIdMap.get(edge.getToId());
+            if (fromId == null || toId == null) {
+                if (LOGGER.isWarnEnabled())
+                    LOGGER.warn("Skipping edge '{}[:{}]' with unknown endpoint", edge.getId(), label);
+                continue;
+            }
+            batch.add(new PendingEdge(edge, fromId, toId));
+            if (batch.size() >= options.batchSize) {
+                sink.accept(new ImportPipeline.Batch<>(label, batch));
+                batch = new ArrayList<>(options.batchSize);
+            }
+        }
+        if (!batch.isEmpty())
+            sink.accept(new ImportPipeline.Batch<>(label, batch));
+    }
+
+    /**
+     * Reads the endpoints of all edges of a label without properties, sorts them by source and target record id and
+     * passes them on in batches.
+     *
+     * @return false if the label has too many edges to be sorted, before anything was passed on
+     */
+    private boolean readSortedEdges(final String label,
+                                    final ImportPipeline.Sink<PendingEdge> sink) throws InterruptedException {
+        long[] fromIds = new long[1024];
+        long[] toIds = new long[1024];
+        int count = 0;
+        for (final Edge edge : graph.getEdges(label)) {
+            final ORID fromId = nodeIdOrientDBIdMap.get(edge.getFromId());
+            final ORID toId = nodeIdOrientDBIdMap.get(edge.getToId());
+            if (fromId == null || toId == null) {
+                if (LOGGER.isWarnEnabled())
+                    LOGGER.warn("Skipping edge '{}[:{}]' with unknown endpoint", edge.getId(), label);
+                continue;
+            }
+            if (count == MAX_SORTED_LABEL_EDGES) {
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("Label '{}' has more than {} edges, sorting its edges per batch only", label,
+                                MAX_SORTED_LABEL_EDGES);
+                return false;
+            }
+            if (count == fromIds.length) {
+                final int capacity = (int) Math.min(MAX_SORTED_LABEL_EDGES, count * 2L);
+                fromIds = Arrays.copyOf(fromIds, capacity);
+                toIds = Arrays.copyOf(toIds, capacity);
+            }
+            fromIds[count] = NodeIdRidMap.pack(fromId);
+            toIds[count] = NodeIdRidMap.pack(toId);
+            count++;
+        }
+        // Replace the record ids by their ranks among the distinct ids, so both fit into a single sort key
+        final long[] distinctFromIds = getDistinctSorted(fromIds, count);
+        final long[] distinctToIds = getDistinctSorted(toIds, count);
+        final long[] keys = new long[count];
+        for (int i = 0; i < count; i++)
+            keys[i] = ((long) Arrays.binarySearch(distinctFromIds, fromIds[i]) << 32) |
+                      Arrays.binarySearch(distinctToIds, toIds[i]);
+        fromIds = null;
+        toIds = null;
+        Arrays.sort(keys);
+        List<PendingEdge> batch = new ArrayList<>(Math.min(count, options.batchSize));
+        for (final long key : keys) {
+            batch.add(new PendingEdge(null, NodeIdRidMap.unpack(distinctFromIds[(int) (key >>> 32)]),
+                                      NodeIdRidMap.unpack(distinctToIds[(int) key])));
+            if (batch.size() >= options.batchSize) {
+                sink.accept(new ImportPipeline.Batch<>(label, batch));
+                batch = new ArrayList<>(options.batchSize);
+            }
+        }
+        if (!batch.isEmpty())
+            sink.accept(new ImportPipeline.Batch<>(label, batch));
+        return true;
+    }
+
+    private static long[] getDistinctSorted(final long[] values, final int count) {
+        final long[] result = Arrays.copyOf(values, count);
+        Arrays.sort(result);
+        int distinctCount = 0;
+        for (int i = 0; i < result.length; i++)
+            if (i == 0 || result[i] != result[i - 1])
+                result[distinctCount++] = result[i];
+        return Arrays.copyOf(result, distinctCount);
+    }
+
+    private int importBatch(final ODatabaseDocumentInternal db, final OClass definition,
+                            final PropertyWriter propertyWriter, final List<PendingEdge> batch,
+                            final boolean lightweight) {
+        batch.sort(LOCALITY_ORDER);
+        final Map<ORID, OVertex> vertices = new HashMap<>();
+        try {
+            db.begin();
+            for (final PendingEdge pendingEdge : batch) {
+                final OVertex fromNode = vertices.computeIfAbsent(pendingEdge.fromId, db::getRecord);
+                final OVertex toNode = vertices.computeIfAbsent(pendingEdge.toId, db::getRecord);
+                if (lightweight) {
+                    fromNode.addLightWeightEdge(toNode, definition);
+                    continue;
+                }
+                final OEdge orientEdge = db.newEdge(fromNode, toNode, definition);
+                if (pendingEdge.edge != null)
+                    propertyWriter.write(pendingEdge.edge, orientEdge);
+                db.save(orientEdge);
+            }
+            if (lightweight)
+                for (final OVertex vertex : vertices.values())
+                    db.save(vertex);
+            db.commit();
+        } catch (RuntimeException e) {
+            if (db.getTransaction().isActive())
+                db.rollback();
+            throw e;
+        }
+        return batch.size();
+    }
+}
@@ -0,0 +1,103 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import de.unibi.agbi.biodwh2.core.io.mvstore.MVStoreModel;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Computes a content fingerprint per node and edge label of a graph. Every record is hashed including its id and, for
+ * edges, the ids of its endpoints. The record hashes are summed up, so the fingerprint does not depend on the
+ * iteration order of the graph.
+ */
+final class GraphFingerprints {
+    private static final Logger LOGGER = LogManager.getLogger(GraphFingerprints.class);
+
+    private static final class Fingerprint {
+        private long count;
+        private long high;
+        private long low;
+
+        void add(final String content) {
+            final long[] hash = MurmurHash3.hash128x64(content.getBytes(StandardCharsets.UTF_8));
+            high += hash[0];
+            low += hash[1];
+            count++;
+        }
+
+        @Override
+        public String toString() {
+            // Both halves are zero-padded, so different hashes cannot concatenate to the same string
+            return count + ":" + String.format("%016x%016x", high, low);
+        }
+    }
+
+    private GraphFingerprints() {
+    }
+
+    static Map<String, String> forNodeLabels(final Graph graph, final int threads) throws InterruptedException {
+        return computeFingerprints(graph.getNodeLabels(), threads, label -> {
+            final Fingerprint fingerprint = new Fingerprint();
+            for (final Node node : graph.getNodes(label))
+                fingerprint.add(node.getId() + "|" + getContent(node));
+            return fingerprint.toString();
+        });
+    }
+
+    static Map<String, String> forEdgeLabels(final Graph graph, final int threads) throws InterruptedException {
+        return computeFingerprints(graph.getEdgeLabels(), threads, label -> {
+            final Fingerprint fingerprint = new Fingerprint();
+            for (final Edge edge : graph.getEdges(label))
+                fingerprint.add(edge.getId() + "|" + edge.getFromId() + "|" + edge.getToId() + "|" + getContent(edge));
+            return fingerprint.toString();
+        });
+    }
+
+    private static Map<String, String> computeFingerprints(final String[] labels, final int threads,
+                                                           final Function<String, String> fingerprint) throws InterruptedException {
+        final Map<String, String> result = new ConcurrentHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        for (final String label : labels)
+            executor.execute(() -> result.put(label, fingerprint.apply(label)));
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        if (result.size() != labels.length)
+            throw new IllegalStateException("Failed to compute fingerprints of all labels");
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("Computed fingerprints {}", result);
+        return result;
+    }
+
+    private static String getContent(final MVStoreModel model) {
+        final String[] keys = model.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        final StringBuilder builder = new StringBuilder();
+        for (final String key : keys) {
+            final Object value = model.getProperty(key);
+            builder.append(key).append('=');
+            if (value instanceof Object[])
+                builder.append(Arrays.deepToString((Object[]) value));
+            else if (value != null && value.getClass().isArray())
+                builder.append(Arrays.deepToString(new Object[]{value}));
+            else if (value instanceof Collection)
+                builder.append(Arrays.deepToString(((Collection<?>) value).toArray()));
+            else
+                builder.append(value);
+            builder.append(';');
+        }
+        return builder.toString();
+    }
+}
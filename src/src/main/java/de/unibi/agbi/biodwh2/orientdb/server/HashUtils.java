@@ -1,14 +1,38 @@
 package de.unibi.agbi.biodwh2.orientdb.server;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 final class HashUtils {
+    private static final Logger LOGGER = LogManager.getLogger(HashUtils.class);
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final long PRIME_1 = 0x9e3779b97f4a7c15L;
+    private static final long PRIME_2 = 0xc2b2ae3d27d4eb4fL;
+    private static final String CACHE_IDENTITY_KEY = "identity";
+    private static final String CACHE_HASH_KEY = "hash";
+
     private HashUtils() {
     }
 
@@ -18,8 +42,108 @@ final class HashUtils {
         }
     }
 
-    static String getFastPseudoHashFromFile(final String filePath) throws IOException {
-        final BasicFileAttributes attributes = Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class);
-        return DigestUtils.md5Hex(attributes.lastModifiedTime() + "__" + attributes.size());
+    /**
+     * Returns a fingerprint of the file content. The file is memory-mapped in chunks which are hashed in parallel and
+     * the chunk hashes are combined in order. As hashing large files still takes a few seconds, the result is cached
+     * in {@code cacheFilePath} together with the identity of the file (file key, size and modification time) and
+     * reused as long as the identity does not change.
+     */
+    static String getContentHashFromFile(final Path filePath, final Path cacheFilePath) throws IOException {
+        final String identity = getFileIdentity(filePath);
+        final Properties cache = new Properties();
+        if (Files.exists(cacheFilePath)) {
+            try (InputStream inputStream = Files.newInputStream(cacheFilePath)) {
+                cache.load(inputStream);
+            }
+            if (identity.equals(cache.getProperty(CACHE_IDENTITY_KEY)) && cache.getProperty(CACHE_HASH_KEY) != null)
+                return cache.getProperty(CACHE_HASH_KEY);
+        }
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Computing content checksum of '{}'...", filePath);
+        final String hash = getContentHashFromFile(filePath);
+        cache.setProperty(CACHE_IDENTITY_KEY, identity);
+        cache.setProperty(CACHE_HASH_KEY, hash);
+        Files.createDirectories(cacheFilePath.toAbsolutePath().getParent());
+        try (OutputStream outputStream = Files.newOutputStream(cacheFilePath)) {
+            cache.store(outputStream, null);
+        }
+        return hash;
+    }
+
+    private static String getFileIdentity(final Path filePath) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        final Object fileKey = attributes.fileKey();
+        return (fileKey != null ? fileKey : filePath.toAbsolutePath()) + "__" + attributes.size() + "__" +
+               attributes.lastModifiedTime().toMillis();
+    }
+
+    static String getContentHashFromFile(final Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final int chunkCount = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            final int threads = Math.max(1, Math.min(chunkCount, Runtime.getRuntime().availableProcessors()));
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final List<Future<Long>> chunkHashes = new ArrayList<>(chunkCount);
+                for (int i = 0; i < chunkCount; i++) {
+                    final long position = (long) i * CHUNK_SIZE;
+                    final long length = Math.min(CHUNK_SIZE, size - position);
+                    chunkHashes.add(executor.submit(() -> hashChunk(channel.map(FileChannel.MapMode.READ_ONLY,
+                                                                                position, length))));
+                }
+                final ByteBuffer combined = ByteBuffer.allocate((chunkCount + 1) * Long.BYTES);
+                combined.putLong(size);
+                for (final Future<Long> chunkHash : chunkHashes)
+                    combined.putLong(chunkHash.get());
+                final long[] hash = MurmurHash3.hash128x64(combined.array());
+                return String.format("%016x%016x", hash[0], hash[1]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while hashing '" + filePath + "'", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to hash '" + filePath + "'", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Hashes the chunk eight bytes at a time directly from the mapped buffer so the content is never copied to the
+     * heap. Four independent lanes keep the multiplications from serializing on each other.
+     */
+    private static long hashChunk(final MappedByteBuffer chunk) {
+        final ByteBuffer buffer = chunk.order(ByteOrder.LITTLE_ENDIAN);
+        final int length = buffer.remaining();
+        long lane1 = PRIME_1;
+        long lane2 = PRIME_2;
+        long lane3 = ~PRIME_1;
+        long lane4 = ~PRIME_2;
+        int offset = 0;
+        for (; offset + 4 * Long.BYTES <= length; offset += 4 * Long.BYTES) {
+            lane1 = mixLane(lane1, buffer.getLong(offset));
+            lane2 = mixLane(lane2, buffer.getLong(offset + Long.BYTES));
+            lane3 = mixLane(lane3, buffer.getLong(offset + 2 * Long.BYTES));
+            lane4 = mixLane(lane4, buffer.getLong(offset + 3 * Long.BYTES));
+        }
+        long hash = Long.rotateLeft(lane1, 1) + Long.rotateLeft(lane2, 7) + Long.rotateLeft(lane3, 12) +
+                    Long.rotateLeft(lane4, 18);
+        for (; offset < length; offset++)
+            hash = mixLane(hash, buffer.get(offset));
+        return finalizeHash(hash ^ length);
+    }
+
+    private static long mixLane(final long lane, final long value) {
+        return Long.rotateLeft(lane + value * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long finalizeHash(long hash) {
+        // Finalizer of the 64-bit MurmurHash3
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
     }
 }
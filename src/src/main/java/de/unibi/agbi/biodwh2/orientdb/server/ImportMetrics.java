@@ -0,0 +1,311 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportReport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Collects throughput, phase durations and memory usage of a database import. The metrics are exposed over JMX while
+ * the import runs and are written as a JSON {@link ImportReport} once it is finished.
+ */
+final class ImportMetrics implements ImportMetricsMXBean {
+    private static final Logger LOGGER = LogManager.getLogger(ImportMetrics.class);
+    static final String OBJECT_NAME = "de.unibi.agbi.biodwh2.orientdb.server:type=ImportMetrics";
+    /**
+     * OrientDB registers the performance statistics of every open storage under this domain.
+     */
+    private static final String STORAGE_STATISTICS_QUERY = "com.orientechnologies.orient.core.storage.impl.local.statistic:type=OPerformanceStatisticManagerMXBean,*";
+
+    private static final class LabelMetrics {
+        final AtomicLong count = new AtomicLong();
+        final long firstNanos = System.nanoTime();
+        volatile long lastNanos = firstNanos;
+
+        void record(final long amount) {
+            count.addAndGet(amount);
+            lastNanos = System.nanoTime();
+        }
+
+        long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lastNanos - firstNanos);
+        }
+
+        long getPerSecond() {
+            return count.get() * 1000 / Math.max(1, getMillis());
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phaseDurations = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, LabelMetrics> nodeLabels = new ConcurrentHashMap<>();
+    private final Map<String, LabelMetrics> edgeLabels = new ConcurrentHashMap<>();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong edges = new AtomicLong();
+    private volatile String currentPhase = "setup";
+    private volatile long phaseStartNanos = startNanos;
+    private volatile long nodesPhaseNanos;
+    private volatile long edgesPhaseNanos;
+    private volatile long expectedNodes;
+    private volatile long expectedEdges;
+    private final LongAccumulator peakHeapUsed = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator peakDirectMemoryUsed = new LongAccumulator(Math::max, 0);
+    private ObjectName objectName;
+
+    void setExpectedCounts(final long expectedNodes, final long expectedEdges) {
+        this.expectedNodes = expectedNodes;
+        this.expectedEdges = expectedEdges;
+    }
+
+    synchronized void startPhase(final String phase) {
+        endPhase();
+        currentPhase = phase;
+        phaseStartNanos = System.nanoTime();
+        if ("nodes".equals(phase))
+            nodesPhaseNanos = phaseStartNanos;
+        else if ("edges".equals(phase))
+            edgesPhaseNanos = phaseStartNanos;
+    }
+
+    synchronized void endPhase() {
+        if (currentPhase != null)
+            phaseDurations.put(currentPhase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStartNanos));
+        currentPhase = null;
+        sampleMemory();
+    }
+
+    /**
+     * Starts the clock of a node label before its first batch is written, so the rate includes the first batch.
+     */
+    void startNodeLabel(final String label) {
+        nodeLabels.computeIfAbsent(label, k -> new LabelMetrics());
+    }
+
+    void startEdgeLabel(final String label) {
+        edgeLabels.computeIfAbsent(label, k -> new LabelMetrics());
+    }
+
+    void recordNodes(final String label, final long count) {
+        nodeLabels.computeIfAbsent(label, k -> new LabelMetrics()).record(count);
+        nodes.addAndGet(count);
+    }
+
+    void recordEdges(final String label, final long count) {
+        edgeLabels.computeIfAbsent(label, k -> new LabelMetrics()).record(count);
+        edges.addAndGet(count);
+    }
+
+    /**
+     * Updates the peak memory usage. Called at the end of each phase and by the progress reports of the import
+     * pipelines rather than per batch, as reading the buffer pools is not free.
+     */
+    void sampleMemory() {
+        peakHeapUsed.accumulate(getHeapUsedBytes());
+        peakDirectMemoryUsed.accumulate(getDirectMemoryUsedBytes());
+    }
+
+    void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+            invokeOnStorageStatistics("startMonitoring");
+        } catch (JMException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to register import metrics with JMX", e);
+        }
+    }
+
+    void unregister() {
+        invokeOnStorageStatistics("stopMonitoring");
+        try {
+            if (objectName != null)
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to unregister import metrics from JMX", e);
+        }
+    }
+
+    private void invokeOnStorageStatistics(final String operation) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (final ObjectName name : server.queryNames(new ObjectName(STORAGE_STATISTICS_QUERY), null))
+                server.invoke(name, operation, new Object[0], new String[0]);
+        } catch (JMException ignored) {
+            // Storage statistics are optional
+        }
+    }
+
+    @Override
+    public String getCurrentPhase() {
+        return currentPhase;
+    }
+
+    @Override
+    public long getElapsedSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getNodesWritten() {
+        return nodes.get();
+    }
+
+    @Override
+    public long getEdgesWritten() {
+        return edges.get();
+    }
+
+    @Override
+    public long getNodesPerSecond() {
+        return getRate(nodes.get(), nodesPhaseNanos, "nodes");
+    }
+
+    @Override
+    public long getEdgesPerSecond() {
+        return getRate(edges.get(), edgesPhaseNanos, "edges");
+    }
+
+    private long getRate(final long count, final long phaseStart, final String phase) {
+        if (phaseStart == 0)
+            return 0;
+        final Long finishedMillis = phaseDurations.get(phase);
+        final long millis = finishedMillis != null ? finishedMillis : TimeUnit.NANOSECONDS.toMillis(
+                System.nanoTime() - phaseStart);
+        return count * 1000 / Math.max(1, millis);
+    }
+
+    @Override
+    public long getEstimatedSecondsRemaining() {
+        final String phase = currentPhase;
+        if ("nodes".equals(phase))
+            return getRemainingSeconds(expectedNodes - nodes.get(), getNodesPerSecond());
+        if ("edges".equals(phase))
+            return getRemainingSeconds(expectedEdges - edges.get(), getEdgesPerSecond());
+        return 0;
+    }
+
+    private static long getRemainingSeconds(final long remaining, final long perSecond) {
+        return perSecond > 0 ? Math.max(0, remaining) / perSecond : -1;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseDurationsMillis() {
+        synchronized (phaseDurations) {
+            return new LinkedHashMap<>(phaseDurations);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getNodeLabelRates() {
+        return getLabelRates(nodeLabels);
+    }
+
+    @Override
+    public Map<String, Long> getEdgeLabelRates() {
+        return getLabelRates(edgeLabels);
+    }
+
+    private static Map<String, Long> getLabelRates(final Map<String, LabelMetrics> labels) {
+        final Map<String, Long> result = new TreeMap<>();
+        for (final Map.Entry<String, LabelMetrics> entry : labels.entrySet())
+            result.put(entry.getKey(), entry.getValue().getPerSecond());
+        return result;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public long getDirectMemoryUsedBytes() {
+        long result = 0;
+        for (final BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            result += pool.getMemoryUsed();
+        return result;
+    }
+
+    @Override
+    public int getDiskCacheHitRate() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (final ObjectName name : server.queryNames(new ObjectName(STORAGE_STATISTICS_QUERY), null)) {
+                final Object value = server.getAttribute(name, "CacheHits");
+                if (value instanceof Number)
+                    return ((Number) value).intValue();
+            }
+        } catch (JMException ignored) {
+            // Storage statistics are optional
+        }
+        return -1;
+    }
+
+    void writeReport(final Path reportFilePath, final Path sourceGraphPath, final ImportOptions options) {
+        final ImportReport report = new ImportReport();
+        report.createdAt = Instant.now().toString();
+        report.sourceGraph = sourceGraphPath.toString();
+        try {
+            report.sourceGraphSize = Files.size(sourceGraphPath);
+            report.sourceGraphModified = Files.getLastModifiedTime(sourceGraphPath).toString();
+        } catch (IOException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to read attributes of source graph '{}'", sourceGraphPath, e);
+        }
+        report.options = options;
+        report.totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        report.phaseMillis = getPhaseDurationsMillis();
+        report.nodes = nodes.get();
+        report.edges = edges.get();
+        report.nodeLabels = getLabelReports(nodeLabels);
+        report.edgeLabels = getLabelReports(edgeLabels);
+        report.peakHeapUsedBytes = peakHeapUsed.get();
+        report.peakDirectMemoryUsedBytes = peakDirectMemoryUsed.get();
+        report.diskCacheHitRate = getDiskCacheHitRate();
+        try {
+            final ObjectMapper objectMapper = new ObjectMapper();
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+            objectMapper.writeValue(reportFilePath.toFile(), report);
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Import report written to '{}'", reportFilePath);
+        } catch (IOException e) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Failed to write import report '{}'", reportFilePath, e);
+        }
+    }
+
+    private static Map<String, ImportReport.Label> getLabelReports(final Map<String, LabelMetrics> labels) {
+        final Map<String, ImportReport.Label> result = new TreeMap<>();
+        for (final Map.Entry<String, LabelMetrics> entry : labels.entrySet()) {
+            final ImportReport.Label label = new ImportReport.Label();
+            label.count = entry.getValue().count.get();
+            label.millis = entry.getValue().getMillis();
+            label.perSecond = entry.getValue().getPerSecond();
+            result.put(entry.getKey(), label);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import java.util.Map;
+
+/**
+ * Import progress exposed over JMX as {@value ImportMetrics#OBJECT_NAME} while a database is created.
+ */
+public interface ImportMetricsMXBean {
+    String getCurrentPhase();
+
+    long getElapsedSeconds();
+
+    long getNodesWritten();
+
+    long getEdgesWritten();
+
+    long getNodesPerSecond();
+
+    long getEdgesPerSecond();
+
+    long getEstimatedSecondsRemaining();
+
+    Map<String, Long> getPhaseDurationsMillis();
+
+    Map<String, Long> getNodeLabelRates();
+
+    Map<String, Long> getEdgeLabelRates();
+
+    long getHeapUsedBytes();
+
+    long getDirectMemoryUsedBytes();
+
+    int getDiskCacheHitRate();
+}
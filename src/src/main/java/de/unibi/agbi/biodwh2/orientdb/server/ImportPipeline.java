@@ -0,0 +1,225 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Staged import pipeline. Reader tasks decode records from the source graph into batches which are handed to the
+ * writer threads through a bounded queue. A full queue blocks the readers, so at most {@code queueCapacity} batches
+ * are held in memory. The time readers spend blocked on a full queue and writers spend waiting on an empty queue
+ * shows which stage is the bottleneck and is logged periodically together with the throughput of both stages.
+ * <p>
+ * An optional {@link LabelListener} is notified when the first batch of a label is about to be written and once the
+ * reader of a label finished and all of its batches were written.
+ */
+final class ImportPipeline<T> {
+    private static final Logger LOGGER = LogManager.getLogger(ImportPipeline.class);
+    private static final long REPORT_INTERVAL_SECONDS = 30;
+
+    static final class Batch<T> {
+        final String label;
+        final List<T> items;
+
+        Batch(final String label, final List<T> items) {
+            this.label = label;
+            this.items = items;
+        }
+    }
+
+    @FunctionalInterface
+    interface Sink<T> {
+        void accept(Batch<T> batch) throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    interface Reader<T> {
+        void read(String label, Sink<T> sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(Batch<T> batch) throws Exception;
+    }
+
+    interface LabelListener {
+        void labelStarted(String label) throws Exception;
+
+        void labelCompleted(String label) throws Exception;
+    }
+
+    private static final Batch<?> END_OF_STREAM = new Batch<>(null, new ArrayList<>());
+
+    private final String name;
+    private final BlockingQueue<Batch<T>> queue;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final AtomicLong readItems = new AtomicLong();
+    private final AtomicLong writtenItems = new AtomicLong();
+    private final AtomicLong readerBlockedNanos = new AtomicLong();
+    private final AtomicLong writerIdleNanos = new AtomicLong();
+    /**
+     * Batches of each label which are not yet written, plus one while the label is still being read.
+     */
+    private final Map<String, AtomicInteger> pendingBatches = new ConcurrentHashMap<>();
+    private final Set<String> startedLabels = ConcurrentHashMap.newKeySet();
+    private LabelListener labelListener;
+    private Runnable progressListener;
+    private long startTime;
+
+    ImportPipeline(final String name, final int queueCapacity) {
+        this.name = name;
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    void setLabelListener(final LabelListener labelListener) {
+        this.labelListener = labelListener;
+    }
+
+    /**
+     * Sets a listener called with every progress report, every {@value #REPORT_INTERVAL_SECONDS} seconds and once the
+     * pipeline is finished.
+     */
+    void setProgressListener(final Runnable progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    @SuppressWarnings("unchecked")
+    void run(final String[] labels, final int readerCount, final Reader<T> reader, final int writerCount,
+             final Writer<T> writer) throws InterruptedException {
+        startTime = System.nanoTime();
+        final ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, readerCount));
+        final ExecutorService writers = Executors.newFixedThreadPool(Math.max(1, writerCount));
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(this::reportProgress, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS,
+                                     TimeUnit.SECONDS);
+        try {
+            for (int i = 0; i < Math.max(1, writerCount); i++)
+                writers.execute(() -> consume(writer));
+            for (final String label : labels)
+                pendingBatches.put(label, new AtomicInteger(1));
+            for (final String label : labels)
+                readers.execute(() -> produce(label, reader));
+            readers.shutdown();
+            readers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            readers.shutdownNow();
+            for (int i = 0; i < Math.max(1, writerCount); i++)
+                queue.put((Batch<T>) END_OF_STREAM);
+            writers.shutdown();
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            reporter.shutdownNow();
+        }
+        reportProgress();
+        if (failure.get() != null)
+            throw new IllegalStateException("Failed to import " + name, failure.get());
+    }
+
+    private void produce(final String label, final Reader<T> reader) {
+        if (failure.get() != null)
+            return;
+        try {
+            reader.read(label, this::offer);
+            release(label);
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private void offer(final Batch<T> batch) throws InterruptedException {
+        if (failure.get() != null)
+            throw new InterruptedException("Import of " + name + " failed");
+        final long start = System.nanoTime();
+        pendingBatches.get(batch.label).incrementAndGet();
+        queue.put(batch);
+        readerBlockedNanos.addAndGet(System.nanoTime() - start);
+        readItems.addAndGet(batch.items.size());
+    }
+
+    private void consume(final Writer<T> writer) {
+        while (true) {
+            final Batch<T> batch;
+            try {
+                final long start = System.nanoTime();
+                batch = queue.take();
+                writerIdleNanos.addAndGet(System.nanoTime() - start);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch == END_OF_STREAM)
+                return;
+            // Keep draining after a failure so that readers blocked on the queue are released
+            if (failure.get() != null)
+                continue;
+            try {
+                if (labelListener != null && startedLabels.add(batch.label))
+                    labelListener.labelStarted(batch.label);
+                writer.write(batch);
+                writtenItems.addAndGet(batch.items.size());
+                release(batch.label);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void release(final String label) throws Exception {
+        if (pendingBatches.get(label).decrementAndGet() == 0 && failure.get() == null && labelListener != null)
+            labelListener.labelCompleted(label);
+    }
+
+    private void fail(final Exception e) {
+        if (failure.compareAndSet(null, e))
+            queue.clear();
+    }
+
+    long getReadItems() {
+        return readItems.get();
+    }
+
+    long getWrittenItems() {
+        return writtenItems.get();
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    long getReaderBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readerBlockedNanos.get());
+    }
+
+    long getWriterIdleMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writerIdleNanos.get());
+    }
+
+    private void reportProgress() {
+        logProgress();
+        if (progressListener != null)
+            progressListener.run();
+    }
+
+    private void logProgress() {
+        if (!LOGGER.isInfoEnabled())
+            return;
+        final long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        LOGGER.info("[{}] read {} ({}/s, blocked {} ms), written {} ({}/s, idle {} ms), queue {}/{} batches", name,
+                    getReadItems(), getReadItems() * 1000 / elapsedMillis, getReaderBlockedMillis(),
+                    getWrittenItems(), getWrittenItems() * 1000 / elapsedMillis, getWriterIdleMillis(),
+                    getQueueDepth(), getQueueDepth() + queue.remainingCapacity());
+    }
+}
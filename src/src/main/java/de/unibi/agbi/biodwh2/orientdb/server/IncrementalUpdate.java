@@ -0,0 +1,85 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportState;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+
+/**
+ * Determines which vertex and edge classes of an existing database have to be reimported by comparing the label
+ * fingerprints of the previous and current import. Changed node labels invalidate all edge labels which had an
+ * endpoint in them, as the record ids of their vertices change.
+ */
+final class IncrementalUpdate {
+    private static final Logger LOGGER = LogManager.getLogger(IncrementalUpdate.class);
+
+    private final ImportState previous;
+    private final Set<String> changedNodeLabels = new TreeSet<>();
+    private final Set<String> removedNodeLabels = new TreeSet<>();
+    private final Set<String> changedEdgeLabels = new TreeSet<>();
+    private final Set<String> removedEdgeLabels = new TreeSet<>();
+
+    IncrementalUpdate(final ImportState previous, final ImportState current) {
+        this.previous = previous;
+        collectChanges(previous.nodeLabelFingerprints, current.nodeLabelFingerprints, changedNodeLabels,
+                       removedNodeLabels);
+        collectChanges(previous.edgeLabelFingerprints, current.edgeLabelFingerprints, changedEdgeLabels,
+                       removedEdgeLabels);
+        for (final String label : current.edgeLabelFingerprints.keySet()) {
+            final List<String> endpoints = previous.edgeLabelEndpoints.getOrDefault(label, Collections.emptyList());
+            for (final String endpoint : endpoints)
+                if (changedNodeLabels.contains(endpoint) || removedNodeLabels.contains(endpoint))
+                    changedEdgeLabels.add(label);
+        }
+    }
+
+    private static void collectChanges(final Map<String, String> previous, final Map<String, String> current,
+                                       final Set<String> changed, final Set<String> removed) {
+        for (final Map.Entry<String, String> entry : current.entrySet())
+            if (!entry.getValue().equals(previous.get(entry.getKey())))
+                changed.add(entry.getKey());
+        for (final String label : previous.keySet())
+            if (!current.containsKey(label))
+                removed.add(label);
+    }
+
+    String[] getNodeLabelsToImport() {
+        return changedNodeLabels.toArray(new String[0]);
+    }
+
+    String[] getEdgeLabelsToImport() {
+        return changedEdgeLabels.toArray(new String[0]);
+    }
+
+    boolean isUnchanged(final String edgeLabel) {
+        return !changedEdgeLabels.contains(edgeLabel) && !removedEdgeLabels.contains(edgeLabel);
+    }
+
+    /**
+     * Removes all classes which are reimported or no longer exist. Edge classes are removed first including their
+     * links stored in the vertices of unchanged classes.
+     */
+    void removeOutdatedClasses(final ODatabaseDocumentInternal db) {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Updating {} node labels ({} removed) and {} edge labels ({} removed)...",
+                        changedNodeLabels.size(), removedNodeLabels.size(), changedEdgeLabels.size(),
+                        removedEdgeLabels.size());
+        final Set<String> outdatedEdgeLabels = new TreeSet<>(removedEdgeLabels);
+        outdatedEdgeLabels.addAll(changedEdgeLabels);
+        final OSchema schema = db.getMetadata().getSchema();
+        for (final String label : outdatedEdgeLabels) {
+            for (final String endpoint : previous.edgeLabelEndpoints.getOrDefault(label, Collections.emptyList()))
+                if (!changedNodeLabels.contains(endpoint) && !removedNodeLabels.contains(endpoint) &&
+                    schema.existsClass(endpoint))
+                    db.command("UPDATE `" + endpoint + "` REMOVE `out_" + label + "`, `in_" + label + "`").close();
+            OrientDBService.dropClass(db, label);
+        }
+        final Set<String> outdatedNodeLabels = new TreeSet<>(removedNodeLabels);
+        outdatedNodeLabels.addAll(changedNodeLabels);
+        for (final String label : outdatedNodeLabels)
+            OrientDBService.dropClass(db, label);
+    }
+}
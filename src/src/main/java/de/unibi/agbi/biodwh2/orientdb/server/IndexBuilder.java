@@ -0,0 +1,258 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.IndexDescription;
+import de.unibi.agbi.biodwh2.orientdb.server.model.IndexConfig;
+import de.unibi.agbi.biodwh2.orientdb.server.model.IndexDefinition;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Builds indices with up to a configured number of threads. The indices of a label are built one after another on one
+ * session, while different labels are built concurrently on separate sessions. Indices which already exist are skipped
+ * and a failed index is logged without aborting the others.
+ */
+final class IndexBuilder {
+    private static final Logger LOGGER = LogManager.getLogger(IndexBuilder.class);
+    private static final String FULLTEXT = OClass.INDEX_TYPE.FULLTEXT.name();
+    private static final String LUCENE_ENGINE = "LUCENE";
+    private static final Set<String> SUPPORTED_TYPES = new HashSet<>(Arrays.asList(
+            OClass.INDEX_TYPE.UNIQUE.name(), OClass.INDEX_TYPE.NOTUNIQUE.name(),
+            OClass.INDEX_TYPE.UNIQUE_HASH_INDEX.name(), OClass.INDEX_TYPE.NOTUNIQUE_HASH_INDEX.name(), FULLTEXT));
+
+    interface Listener {
+        void indexStarted(IndexDefinition definition) throws Exception;
+
+        void indexCompleted(IndexDefinition definition) throws Exception;
+    }
+
+    private final Supplier<ODatabaseDocumentInternal> sessionSupplier;
+    private final int threads;
+    private Listener listener;
+
+    IndexBuilder(final Supplier<ODatabaseDocumentInternal> sessionSupplier, final int threads) {
+        this.sessionSupplier = sessionSupplier;
+        this.threads = Math.max(1, threads);
+    }
+
+    void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    static List<IndexDefinition> fromGraph(final Graph graph) {
+        final List<IndexDefinition> result = new ArrayList<>();
+        for (final IndexDescription index : graph.indexDescriptions()) {
+            final IndexDefinition definition = new IndexDefinition();
+            definition.label = index.getLabel();
+            definition.properties.add(index.getProperty());
+            definition.type = index.getType() == IndexDescription.Type.UNIQUE ? OClass.INDEX_TYPE.UNIQUE.name() :
+                              OClass.INDEX_TYPE.NOTUNIQUE.name();
+            result.add(definition);
+        }
+        return result;
+    }
+
+    /**
+     * Applies the workspace index configuration to the indices of the workspace graph.
+     */
+    static List<IndexDefinition> configure(final List<IndexDefinition> graphIndices, final IndexConfig config) {
+        final Map<String, IndexDefinition> result = new LinkedHashMap<>();
+        for (final IndexDefinition definition : graphIndices) {
+            if (config.hashIndices)
+                definition.type = OClass.INDEX_TYPE.UNIQUE.name().equals(definition.type) ?
+                                  OClass.INDEX_TYPE.UNIQUE_HASH_INDEX.name() :
+                                  OClass.INDEX_TYPE.NOTUNIQUE_HASH_INDEX.name();
+            result.put(getName(definition), definition);
+        }
+        for (final IndexDefinition definition : config.indices) {
+            if (definition.label == null || definition.properties == null || definition.properties.isEmpty() ||
+                !SUPPORTED_TYPES.contains(definition.type)) {
+                if (LOGGER.isErrorEnabled())
+                    LOGGER.error("Ignoring invalid index configuration for label '{}' and properties {} of type '{}'",
+                                 definition.label, definition.properties, definition.type);
+                continue;
+            }
+            result.put(getName(definition), definition);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Uses the default OrientDB naming of property indices, so indices created by previous versions are recognized.
+     * Full-text indices get a suffix as they usually exist next to an index on the same property.
+     */
+    static String getName(final IndexDefinition definition) {
+        final String name = definition.label + "." + String.join("_", definition.properties);
+        return FULLTEXT.equals(definition.type) ? name + "_fulltext" : name;
+    }
+
+    /**
+     * Builds all indices and returns the ones which failed.
+     */
+    List<IndexDefinition> build(final Collection<IndexDefinition> definitions) throws InterruptedException {
+        if (definitions.isEmpty())
+            return Collections.emptyList();
+        final List<IndexDefinition> failed = Collections.synchronizedList(new ArrayList<>());
+        final long start = System.currentTimeMillis();
+        final Map<String, List<IndexDefinition>> labels = new LinkedHashMap<>();
+        for (final IndexDefinition definition : definitions)
+            labels.computeIfAbsent(definition.label, k -> new ArrayList<>()).add(definition);
+        final int labelThreads = Math.min(threads, labels.size());
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Building {} indices of {} labels with {} threads...", definitions.size(), labels.size(),
+                        labelThreads);
+        if (labelThreads == 1) {
+            build(definitions, failed);
+        } else {
+            final ExecutorService executor = Executors.newFixedThreadPool(labelThreads);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (final List<IndexDefinition> labelDefinitions : labels.values())
+                    futures.add(executor.submit(() -> {
+                        build(labelDefinitions, failed);
+                        return null;
+                    }));
+                for (final Future<?> future : futures)
+                    future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to build indices", e.getCause());
+            } finally {
+                executor.shutdownNow();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Built {} indices in {} ms", definitions.size() - failed.size(),
+                        System.currentTimeMillis() - start);
+        return failed;
+    }
+
+    /**
+     * Builds the indices on a session of its own, as OrientDB sessions are bound to a single thread.
+     */
+    private void build(final Collection<IndexDefinition> definitions,
+                       final List<IndexDefinition> failed) throws InterruptedException {
+        final ODatabaseDocumentInternal db = sessionSupplier.get();
+        try {
+            for (final IndexDefinition definition : definitions) {
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedException();
+                try {
+                    build(db, definition);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (LOGGER.isErrorEnabled())
+                        LOGGER.error("Failed to create index '{}'", getName(definition), e);
+                    failed.add(definition);
+                }
+            }
+        } finally {
+            db.activateOnCurrentThread();
+            db.close();
+        }
+    }
+
+    private void build(final ODatabaseDocumentInternal db, final IndexDefinition definition) throws Exception {
+        final String name = getName(definition);
+        final OClass classDefinition = db.getMetadata().getSchema().getClass(definition.label);
+        if (classDefinition == null) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Failed to create index '{}' on undefined label '{}'", name, definition.label);
+            return;
+        }
+        for (final String property : definition.properties) {
+            final OProperty propertyDefinition = classDefinition.getProperty(property);
+            if (propertyDefinition == null) {
+                if (LOGGER.isErrorEnabled())
+                    LOGGER.error("Failed to create index on undefined property '{}'", property);
+                return;
+            }
+            if (isCollection(propertyDefinition) && propertyDefinition.getLinkedType() == null) {
+                final OType elementType = getElementType(db, definition.label, property);
+                if (elementType == null) {
+                    if (LOGGER.isWarnEnabled())
+                        LOGGER.warn("Skipping index '{}' on collection property '{}' with unknown element type", name,
+                                    property);
+                    return;
+                }
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("Setting element type of collection property '{}.{}' to {}", definition.label,
+                                property, elementType);
+                propertyDefinition.setLinkedType(elementType);
+            }
+        }
+        // Indices of classes kept by an incremental update or completed before resuming already exist
+        if (classDefinition.getClassIndex(name) != null)
+            return;
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Creating {} index '{}'...", definition.type, name);
+        if (listener != null)
+            listener.indexStarted(definition);
+        final long start = System.currentTimeMillis();
+        final OIndex index;
+        if (FULLTEXT.equals(definition.type))
+            index = classDefinition.createIndex(name, definition.type, null, null, LUCENE_ENGINE,
+                                                definition.properties.toArray(new String[0]));
+        else
+            index = classDefinition.createIndex(name, definition.type, null,
+                                                new ODocument().field("ignoreNullValues", true), null,
+                                                definition.properties.toArray(new String[0]));
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Created index '{}' with {} entries in {} ms", name, index.getInternal().size(),
+                        System.currentTimeMillis() - start);
+        if (listener != null)
+            listener.indexCompleted(definition);
+    }
+
+    /**
+     * Properties of list and set types are created without an element type, as the graph schema only declares the
+     * element types of arrays. It is taken from the first element stored in the property instead.
+     */
+    private static OType getElementType(final ODatabaseDocumentInternal db, final String label,
+                                        final String property) {
+        try (OResultSet resultSet = db.query(
+                "SELECT `" + property + "` AS elements FROM `" + label + "` WHERE `" + property + "` IS NOT NULL")) {
+            while (resultSet.hasNext()) {
+                final Object value = resultSet.next().getProperty("elements");
+                if (value instanceof Collection)
+                    for (final Object element : (Collection<?>) value)
+                        if (element != null)
+                            return OType.getTypeByClass(element.getClass());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collections are indexed by their values, so a {@code CONTAINS} condition on the property is an index lookup.
+     * OrientDB can only do this for embedded lists and sets with a linked type.
+     */
+    private static boolean isCollection(final OProperty propertyDefinition) {
+        final OType type = propertyDefinition.getType();
+        return type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDSET;
+    }
+}
@@ -0,0 +1,76 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.server.config.OServerCommandConfiguration;
+import com.orientechnologies.orient.server.config.OServerEntryConfiguration;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpRequest;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpResponse;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpUtils;
+import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommandAuthenticatedDbAbstract;
+import de.unibi.agbi.biodwh2.orientdb.server.model.Neighborhood;
+import de.unibi.agbi.biodwh2.orientdb.server.model.NeighborhoodRequest;
+
+import java.io.IOException;
+
+/**
+ * HTTP command expanding the neighborhoods of a batch of seed vertices in a single request. The
+ * {@link NeighborhoodRequest} is posted as JSON to {@code /neighborhood/<database>} and the deduplicated subgraph is
+ * returned as a JSON {@link Neighborhood}. Every worker uses a copy of the session of the authenticated user. The
+ * worker threads and session copies are shared by all requests to the command.
+ */
+public class NeighborhoodCommand extends OServerCommandAuthenticatedDbAbstract {
+    static final String PATTERN = "POST|neighborhood/*";
+    static final String THREADS_PARAMETER = "threads";
+
+    private final NeighborhoodExpansion expansion;
+
+    public NeighborhoodCommand(final OServerCommandConfiguration configuration) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (final OServerEntryConfiguration parameter : configuration.parameters)
+            if (THREADS_PARAMETER.equals(parameter.name))
+                threads = Integer.parseInt(parameter.value);
+        expansion = new NeighborhoodExpansion(threads);
+    }
+
+    @Override
+    public String[] getNames() {
+        return new String[]{PATTERN};
+    }
+
+    @Override
+    public boolean execute(final OHttpRequest iRequest, final OHttpResponse iResponse) throws Exception {
+        checkSyntax(iRequest.getUrl(), 2, "Syntax error: neighborhood/<database>");
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final NeighborhoodRequest request;
+        try {
+            request = objectMapper.readValue(iRequest.getContent(), NeighborhoodRequest.class);
+        } catch (IOException e) {
+            sendBadRequest(iResponse, "Invalid neighborhood request: " + e.getMessage());
+            return false;
+        }
+        iRequest.getData().commandInfo = "Neighborhood expansion";
+        iRequest.getData().commandDetail = request.label + "." + request.property;
+        final ODatabaseDocumentInternal db = (ODatabaseDocumentInternal) getProfiledDatabaseInstance(iRequest);
+        try {
+            try {
+                NeighborhoodExpansion.validate(db, request);
+            } catch (IllegalArgumentException e) {
+                sendBadRequest(iResponse, e.getMessage());
+                return false;
+            }
+            final Neighborhood neighborhood = expansion.expand(db, request);
+            iResponse.send(OHttpUtils.STATUS_OK_CODE, OHttpUtils.STATUS_OK_DESCRIPTION, OHttpUtils.CONTENT_JSON,
+                           objectMapper.writeValueAsString(neighborhood), null);
+        } finally {
+            db.activateOnCurrentThread();
+            db.close();
+        }
+        return false;
+    }
+
+    private static void sendBadRequest(final OHttpResponse iResponse, final String message) throws IOException {
+        iResponse.send(OHttpUtils.STATUS_BADREQ_CODE, OHttpUtils.STATUS_BADREQ_DESCRIPTION,
+                       OHttpUtils.CONTENT_TEXT_PLAIN, message, null);
+    }
+}
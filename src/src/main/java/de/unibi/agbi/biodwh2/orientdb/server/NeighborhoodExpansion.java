@@ -0,0 +1,290 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.OElement;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.sql.executor.OResult;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import de.unibi.agbi.biodwh2.orientdb.server.model.Neighborhood;
+import de.unibi.agbi.biodwh2.orientdb.server.model.NeighborhoodRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Expands the neighborhoods of a batch of seed vertices up to a depth and merges them into one deduplicated subgraph.
+ * The seeds are looked up by an indexed property and expanded in parallel on separate sessions.
+ * <p>
+ * The worker threads live as long as the expansion. The sessions are copies of the session of the requesting user and
+ * are kept per database and user for later requests, up to one per worker thread.
+ */
+final class NeighborhoodExpansion {
+    private final int threads;
+    private final ExecutorService executor;
+    private final Map<String, BlockingQueue<ODatabaseDocumentInternal>> idleSessions = new ConcurrentHashMap<>();
+
+    NeighborhoodExpansion(final int threads) {
+        this.threads = Math.max(1, threads);
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            final Thread thread = new Thread(runnable, "neighborhood-expansion-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks the request against the schema of the database.
+     *
+     * @throws IllegalArgumentException if the request is invalid
+     */
+    static void validate(final ODatabaseDocumentInternal db, final NeighborhoodRequest request) {
+        if (request.label == null || request.property == null || request.values == null || request.values.isEmpty())
+            throw new IllegalArgumentException("The label, property and values of the seeds are required");
+        final OClass definition = db.getMetadata().getSchema().getClass(request.label);
+        if (definition == null || !definition.isVertexType())
+            throw new IllegalArgumentException("Unknown vertex label '" + request.label + "'");
+        if (definition.getProperty(request.property) == null)
+            throw new IllegalArgumentException("Unknown property '" + request.property + "'");
+        // Seeds without an index would each be a full scan of the class
+        if (definition.getInvolvedIndexes(request.property).stream().allMatch(
+                index -> OClass.INDEX_TYPE.FULLTEXT.name().equals(index.getType())))
+            throw new IllegalArgumentException(
+                    "Property '" + request.property + "' of label '" + request.label + "' is not indexed");
+        if (request.depth < 0)
+            throw new IllegalArgumentException("The depth must not be negative");
+        if (request.direction == null || Arrays.stream(ODirection.values()).noneMatch(
+                direction -> direction.name().equals(request.direction)))
+            throw new IllegalArgumentException("The direction must be one of OUT, IN or BOTH");
+    }
+
+    /**
+     * Expands the seeds of the request on copies of the session {@code db}, which is active on the calling thread again
+     * once the expansion returns.
+     */
+    Neighborhood expand(final ODatabaseDocumentInternal db,
+                        final NeighborhoodRequest request) throws InterruptedException {
+        final ODirection direction = ODirection.valueOf(request.direction);
+        final String[] edgeLabels = request.edgeLabels != null ? request.edgeLabels.toArray(new String[0]) :
+                                    new String[0];
+        final Map<ORID, Map<String, Object>> vertices = new ConcurrentHashMap<>();
+        final Map<String, Map<String, Object>> edges = new ConcurrentHashMap<>();
+        final Map<String, List<String>> seeds = new ConcurrentHashMap<>();
+        final AtomicBoolean truncated = new AtomicBoolean();
+        final String sessionKey = db.getName() + '\n' + db.getUser().getName();
+        final BlockingQueue<ODatabaseDocumentInternal> sessions = acquireSessions(db, sessionKey,
+                                                                                  request.values.size());
+        // Remaining seeds are skipped once one failed. Tasks are not cancelled, so every session is back in the queue
+        // when all of them are done.
+        final AtomicBoolean failed = new AtomicBoolean();
+        final List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (final Object value : request.values)
+                futures.add(executor.submit(() -> {
+                    if (failed.get())
+                        return null;
+                    final ODatabaseDocumentInternal session = sessions.take();
+                    try {
+                        session.activateOnCurrentThread();
+                        seeds.put(String.valueOf(value), expandSeed(session, request, value, direction, edgeLabels,
+                                                                    vertices, edges, truncated));
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        session.getLocalCache().clear();
+                        sessions.add(session);
+                    }
+                    return null;
+                }));
+            for (final Future<?> future : futures)
+                future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to expand neighborhood", e.getCause());
+        } finally {
+            failed.set(true);
+            awaitCompletion(futures);
+            releaseSessions(sessionKey, sessions);
+            db.activateOnCurrentThread();
+        }
+        final Neighborhood result = new Neighborhood();
+        for (final Object value : request.values)
+            result.seeds.put(String.valueOf(value), seeds.get(String.valueOf(value)));
+        result.vertices.addAll(vertices.values());
+        result.edges.addAll(edges.values());
+        result.truncated = truncated.get();
+        return result;
+    }
+
+    /**
+     * Takes idle sessions of the user and copies the session {@code db} for the missing ones. Copies are made on the
+     * calling thread, as the session may only be used by the thread it is active on.
+     */
+    private BlockingQueue<ODatabaseDocumentInternal> acquireSessions(final ODatabaseDocumentInternal db,
+                                                                     final String sessionKey, final int seedCount) {
+        final int count = Math.min(threads, seedCount);
+        final BlockingQueue<ODatabaseDocumentInternal> idle = idleSessions.computeIfAbsent(
+                sessionKey, k -> new LinkedBlockingQueue<>());
+        final BlockingQueue<ODatabaseDocumentInternal> result = new ArrayBlockingQueue<>(count);
+        while (result.size() < count) {
+            ODatabaseDocumentInternal session = idle.poll();
+            if (session == null || session.isClosed())
+                session = db.copy();
+            result.add(session);
+        }
+        db.activateOnCurrentThread();
+        return result;
+    }
+
+    /**
+     * Waits for all tasks of a request, even if the calling thread is interrupted, as their sessions may only be
+     * released once they are done.
+     */
+    private static void awaitCompletion(final List<Future<?>> futures) {
+        boolean interrupted = false;
+        for (final Future<?> future : futures)
+            while (true)
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException ignored) {
+                    // Reported by the first failed task
+                    break;
+                }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void releaseSessions(final String sessionKey, final BlockingQueue<ODatabaseDocumentInternal> sessions) {
+        final BlockingQueue<ODatabaseDocumentInternal> idle = idleSessions.get(sessionKey);
+        for (final ODatabaseDocumentInternal session : sessions)
+            if (idle.size() < threads)
+                idle.add(session);
+            else {
+                session.activateOnCurrentThread();
+                session.close();
+            }
+    }
+
+    private static List<String> expandSeed(final ODatabaseDocumentInternal db, final NeighborhoodRequest request,
+                                           final Object value, final ODirection direction, final String[] edgeLabels,
+                                           final Map<ORID, Map<String, Object>> vertices,
+                                           final Map<String, Map<String, Object>> edges,
+                                           final AtomicBoolean truncated) {
+        final List<String> seedIds = new ArrayList<>();
+        final Set<ORID> visited = new HashSet<>();
+        List<OVertex> frontier = new ArrayList<>();
+        try (OResultSet resultSet = db.query(
+                "SELECT FROM `" + request.label + "` WHERE `" + request.property + "` = ?", value)) {
+            while (resultSet.hasNext()) {
+                final OResult result = resultSet.next();
+                if (!result.isVertex())
+                    continue;
+                final OVertex seed = result.getVertex().orElseThrow(IllegalStateException::new);
+                seedIds.add(seed.getIdentity().toString());
+                if (visited.add(seed.getIdentity()) && addVertex(seed, vertices, request.limit, truncated))
+                    frontier.add(seed);
+            }
+        }
+        for (int depth = 0; depth < request.depth && !frontier.isEmpty() && !truncated.get(); depth++) {
+            final List<OVertex> nextFrontier = new ArrayList<>();
+            for (final OVertex vertex : frontier)
+                for (final OEdge edge : vertex.getEdges(direction, edgeLabels)) {
+                    final OVertex neighbor = getNeighbor(vertex, edge);
+                    if (neighbor == null)
+                        continue;
+                    if (visited.add(neighbor.getIdentity())) {
+                        if (!addVertex(neighbor, vertices, request.limit, truncated))
+                            return seedIds;
+                        nextFrontier.add(neighbor);
+                    }
+                    addEdge(edge, edges);
+                }
+            frontier = nextFrontier;
+        }
+        return seedIds;
+    }
+
+    private static OVertex getNeighbor(final OVertex vertex, final OEdge edge) {
+        final OVertex from = edge.getFrom();
+        return from != null && from.getIdentity().equals(vertex.getIdentity()) ? edge.getTo() : from;
+    }
+
+    private static boolean addVertex(final OVertex vertex, final Map<ORID, Map<String, Object>> vertices,
+                                     final int limit, final AtomicBoolean truncated) {
+        if (vertices.containsKey(vertex.getIdentity()))
+            return true;
+        if (vertices.size() >= limit) {
+            truncated.set(true);
+            return false;
+        }
+        vertices.computeIfAbsent(vertex.getIdentity(), k -> toMap(vertex));
+        return true;
+    }
+
+    private static void addEdge(final OEdge edge, final Map<String, Map<String, Object>> edges) {
+        final String from = edge.getFrom().getIdentity().toString();
+        final String to = edge.getTo().getIdentity().toString();
+        final String label = edge.getSchemaType().map(OClass::getName).orElse(null);
+        // Lightweight edges have no record of their own and are identified by their endpoints and label
+        final String key = edge.isLightweight() ? from + "-" + label + "-" + to : edge.getIdentity().toString();
+        edges.computeIfAbsent(key, k -> {
+            final Map<String, Object> result = edge.isLightweight() ? new LinkedHashMap<>() : toMap(edge);
+            result.put("@class", label);
+            result.put("out", from);
+            result.put("in", to);
+            return result;
+        });
+    }
+
+    private static Map<String, Object> toMap(final OElement element) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("@rid", element.getIdentity().toString());
+        result.put("@class", element.getSchemaType().map(OClass::getName).orElse(null));
+        for (final String name : element.getPropertyNames())
+            if (!name.startsWith("out_") && !name.startsWith("in_") && !"out".equals(name) && !"in".equals(name))
+                result.put(name, toJsonValue(element.getProperty(name)));
+        return result;
+    }
+
+    private static Object toJsonValue(final Object value) {
+        if (value instanceof OIdentifiable)
+            return ((OIdentifiable) value).getIdentity().toString();
+        if (value instanceof Collection) {
+            final List<Object> result = new ArrayList<>();
+            for (final Object item : (Collection<?>) value)
+                result.add(toJsonValue(item));
+            return result;
+        }
+        if (value instanceof Map) {
+            final Map<String, Object> result = new LinkedHashMap<>();
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                result.put(String.valueOf(entry.getKey()), toJsonValue(entry.getValue()));
+            return result;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,248 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntPredicate;
+
+/**
+ * Open addressing hash map from BioDWH2 node ids to OrientDB record ids using primitive slots outside the java heap.
+ * Every slot takes 16 bytes: the node id (stored as id + 1 so that 0 marks an empty slot) and the record id packed as
+ * 16 bit cluster id and 48 bit cluster position. The slots are either allocated as direct memory or mapped from a
+ * temporary file.
+ * <p>
+ * The capacity is fixed on creation. A persistent mapping is kept in its file when closed and can be reopened by
+ * incremental imports, which drop the entries of removed vertex clusters and grow it if the remaining and expected
+ * entries may exceed its capacity. Writes are
+ * synchronized, lookups are not and are only valid once all writes happened-before them, which is the case for the
+ * edge import following the node import.
+ */
+final class NodeIdRidMap implements AutoCloseable {
+    private static final int SLOT_LONGS = 2;
+    private static final int SLOT_BYTES = SLOT_LONGS * Long.BYTES;
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_SLOTS = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SLOTS - 1;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    private static final long MAX_CLUSTER_POSITION = (1L << 48) - 1;
+
+    private final long capacity;
+    private final long mask;
+    private final long maxSize;
+    private final LongBuffer[] segments;
+    private final Path filePath;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] mappedSegments;
+    private final boolean persistent;
+    private long size;
+
+    private NodeIdRidMap(final long capacity, final Path filePath, final boolean persistent) throws IOException {
+        this.capacity = capacity;
+        mask = capacity - 1;
+        maxSize = (long) (capacity * MAX_LOAD_FACTOR);
+        this.filePath = filePath;
+        this.persistent = persistent;
+        channel = filePath != null ? FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                      StandardOpenOption.WRITE) : null;
+        final int segmentCount = (int) ((capacity + SEGMENT_SLOTS - 1) >>> SEGMENT_SHIFT);
+        segments = new LongBuffer[segmentCount];
+        mappedSegments = new MappedByteBuffer[channel != null ? segmentCount : 0];
+        for (int i = 0; i < segmentCount; i++) {
+            final long slots = Math.min(SEGMENT_SLOTS, capacity - i * SEGMENT_SLOTS);
+            final ByteBuffer buffer;
+            if (channel != null) {
+                mappedSegments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * SEGMENT_SLOTS * SLOT_BYTES,
+                                                slots * SLOT_BYTES);
+                buffer = mappedSegments[i];
+            } else
+                buffer = ByteBuffer.allocateDirect((int) (slots * SLOT_BYTES));
+            segments[i] = buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+
+    private static long getCapacity(final long expectedEntries) {
+        final long minCapacity = Math.max(16, (long) Math.ceil(expectedEntries / MAX_LOAD_FACTOR) + 1);
+        return Long.highestOneBit(minCapacity - 1) << 1;
+    }
+
+    static NodeIdRidMap offHeap(final long expectedEntries) {
+        try {
+            return new NodeIdRidMap(getCapacity(expectedEntries), null, false);
+        } catch (IOException e) {
+            // Direct memory allocation does not perform any IO
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static NodeIdRidMap memoryMapped(final Path directory, final long expectedEntries) throws IOException {
+        Files.createDirectories(directory);
+        return new NodeIdRidMap(getCapacity(expectedEntries),
+                                Files.createTempFile(directory, "node-id-mapping", ".bin"), false);
+    }
+
+    /**
+     * Opens or creates the mapping file. Entries whose record id is in a cluster rejected by {@code validClusterIds}
+     * belong to vertices which no longer exist and are removed.
+     *
+     * @param newEntries number of nodes which will be added to the mapping
+     */
+    static NodeIdRidMap persistent(final Path filePath, final long newEntries,
+                                   final IntPredicate validClusterIds) throws IOException {
+        if (!Files.exists(filePath))
+            return new NodeIdRidMap(getCapacity(newEntries), filePath, true);
+        final long existingCapacity = Files.size(filePath) / SLOT_BYTES;
+        if (Long.bitCount(existingCapacity) != 1)
+            throw new IOException("Node id mapping file '" + filePath + "' is corrupt");
+        final NodeIdRidMap existing = new NodeIdRidMap(existingCapacity, filePath, true);
+        existing.countEntries();
+        final long validEntries = existing.countEntries(validClusterIds);
+        if (validEntries == existing.size && existing.size + newEntries <= existing.maxSize)
+            return existing;
+        final long requiredCapacity = getCapacity(validEntries + newEntries);
+        // Linear probing cannot remove entries in place, so the valid entries are rehashed into a new file which then
+        // replaces the old one
+        final Path rehashedFilePath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        Files.deleteIfExists(rehashedFilePath);
+        try (NodeIdRidMap rehashed = new NodeIdRidMap(requiredCapacity, rehashedFilePath, true)) {
+            existing.copyTo(rehashed, validClusterIds);
+        }
+        existing.close();
+        Files.move(rehashedFilePath, filePath, StandardCopyOption.REPLACE_EXISTING);
+        final NodeIdRidMap result = new NodeIdRidMap(requiredCapacity, filePath, true);
+        result.countEntries();
+        return result;
+    }
+
+    private void countEntries() {
+        size = countEntries(clusterId -> true);
+    }
+
+    private long countEntries(final IntPredicate validClusterIds) {
+        long result = 0;
+        for (long slot = 0; slot < capacity; slot++) {
+            final LongBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            final int offset = (int) ((slot & SEGMENT_MASK) * SLOT_LONGS);
+            if (segment.get(offset) != 0 && validClusterIds.test((int) (segment.get(offset + 1) >>> 48)))
+                result++;
+        }
+        return result;
+    }
+
+    private void copyTo(final NodeIdRidMap target, final IntPredicate validClusterIds) {
+        for (long slot = 0; slot < capacity; slot++) {
+            final LongBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            final int offset = (int) ((slot & SEGMENT_MASK) * SLOT_LONGS);
+            final long key = segment.get(offset);
+            if (key != 0 && validClusterIds.test((int) (segment.get(offset + 1) >>> 48)))
+                target.putRaw(key, segment.get(offset + 1));
+        }
+    }
+
+    synchronized void put(final long nodeId, final ORID id) {
+        if (id.getClusterId() < 0 || id.getClusterId() > Short.MAX_VALUE || id.getClusterPosition() < 0 ||
+            id.getClusterPosition() > MAX_CLUSTER_POSITION)
+            throw new IllegalArgumentException("Record id '" + id + "' of node " + nodeId + " is not persistent");
+        putRaw(nodeId + 1, pack(id));
+    }
+
+    /**
+     * Packs a persistent record id into a long whose natural order is the order of the record ids.
+     */
+    static long pack(final ORID id) {
+        return ((long) id.getClusterId() << 48) | id.getClusterPosition();
+    }
+
+    static ORID unpack(final long value) {
+        return new ORecordId((int) (value >>> 48), value & MAX_CLUSTER_POSITION);
+    }
+
+    private synchronized void putRaw(final long key, final long value) {
+        long slot = mix(key) & mask;
+        while (true) {
+            final LongBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            final int offset = (int) ((slot & SEGMENT_MASK) * SLOT_LONGS);
+            final long storedKey = segment.get(offset);
+            if (storedKey == 0) {
+                if (size >= maxSize)
+                    throw new IllegalStateException("Node id mapping exceeded its capacity of " + maxSize + " nodes");
+                segment.put(offset, key);
+                segment.put(offset + 1, value);
+                size++;
+                return;
+            }
+            if (storedKey == key) {
+                segment.put(offset + 1, value);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    ORID get(final long nodeId) {
+        final long key = nodeId + 1;
+        long slot = mix(key) & mask;
+        while (true) {
+            final LongBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            final int offset = (int) ((slot & SEGMENT_MASK) * SLOT_LONGS);
+            final long storedKey = segment.get(offset);
+            if (storedKey == 0)
+                return null;
+            if (storedKey == key)
+                return unpack(segment.get(offset + 1));
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static long mix(long key) {
+        // Finalizer of the 64-bit MurmurHash3
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    long getMemoryFootprint() {
+        return capacity * SLOT_BYTES;
+    }
+
+    boolean isMemoryMapped() {
+        return channel != null;
+    }
+
+    /**
+     * Writes the entries of a memory-mapped mapping to its file.
+     */
+    void flush() {
+        for (final MappedByteBuffer segment : mappedSegments)
+            segment.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Direct and mapped buffers are released once they are garbage collected
+        if (channel != null) {
+            if (persistent)
+                for (final MappedByteBuffer segment : mappedSegments)
+                    segment.force();
+            channel.close();
+            if (!persistent)
+                Files.deleteIfExists(filePath);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.OVertex;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports the nodes of all labels in batches. The labels are read by {@link ImportOptions#readers} reader threads of
+ * an {@link ImportPipeline}. Each batch is a slice of a single label and is written by one of the workers in its own
+ * transaction on a session taken from the {@link DatabaseSessionPool}, so large labels are spread across all workers.
+ * <p>
+ * With a {@link VertexOrdering} the nodes of each label are read in the order of their rank and every batch is written
+ * to a single cluster of its class, so consecutive vertices of the order end up on consecutive pages instead of being
+ * spread across all clusters of the class. The ordered nodes are collected in windows of at most
+ * {@value #ORDER_WINDOW_SIZE} nodes, one sequential pass over the label per window.
+ */
+final class NodeImporter {
+    private static final Logger LOGGER = LogManager.getLogger(NodeImporter.class);
+    private static final int ORDER_WINDOW_SIZE = 1_000_000;
+
+    private final Graph graph;
+    private final ImportOptions options;
+    private final NodeIdRidMap nodeIdOrientDBIdMap;
+    private final ImportMetrics metrics;
+    private final Map<String, PropertyWriter> propertyWriters = new HashMap<>();
+    private final Map<String, AtomicInteger> batchCounters = new ConcurrentHashMap<>();
+    private ImportPipeline.LabelListener labelListener;
+    private VertexOrdering vertexOrdering;
+
+    NodeImporter(final Graph graph, final ImportOptions options, final NodeIdRidMap nodeIdOrientDBIdMap,
+                 final ImportMetrics metrics) {
+        this.graph = graph;
+        this.options = options;
+        this.nodeIdOrientDBIdMap = nodeIdOrientDBIdMap;
+        this.metrics = metrics;
+        for (final String label : graph.getNodeLabels())
+            propertyWriters.put(label, PropertyWriter.forNodeLabel(graph, label));
+    }
+
+    void setLabelListener(final ImportPipeline.LabelListener labelListener) {
+        this.labelListener = labelListener;
+    }
+
+    void setVertexOrdering(final VertexOrdering vertexOrdering) {
+        this.vertexOrdering = vertexOrdering;
+    }
+
+    void importNodes(final DatabaseSessionPool pool, final String[] labels) throws InterruptedException {
+        final ImportPipeline<Node> pipeline = new ImportPipeline<>("nodes", options.workers * 2);
+        pipeline.setLabelListener(labelListener);
+        pipeline.setProgressListener(metrics::sampleMemory);
+        pipeline.run(labels, options.readers, (label, sink) -> readNodes(labels, label, sink), options.workers,
+                     batch -> importBatch(pool, batch.label, batch.items));
+    }
+
+    private void readNodes(final String[] labels, final String label,
+                           final ImportPipeline.Sink<Node> sink) throws InterruptedException {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Creating nodes with label '{}' ({}/{})...", label, ArrayUtils.indexOf(labels, label) + 1,
+                        labels.length);
+        if (vertexOrdering != null) {
+            readOrderedNodes(label, sink);
+            return;
+        }
+        List<Node> batch = new ArrayList<>(options.batchSize);
+        for (final Node node : graph.getNodes(label)) {
+            batch.add(node);
+            if (batch.size() >= options.batchSize) {
+                sink.accept(new ImportPipeline.Batch<>(label, batch));
+                batch = new ArrayList<>(options.batchSize);
+            }
+        }
+        if (!batch.isEmpty())
+            sink.accept(new ImportPipeline.Batch<>(label, batch));
+    }
+
+    /**
+     * Reads the nodes of the label in the order of their positions. Each window of positions is filled by a sequential
+     * pass over the label, as looking up each node by id in the order of the positions would cost a random read per
+     * node.
+     */
+    private void readOrderedNodes(final String label,
+                                  final ImportPipeline.Sink<Node> sink) throws InterruptedException {
+        final int count = (int) graph.getNumberOfNodes(label);
+        final int[] positions = vertexOrdering.getPositions(graph.getNodes(label), count);
+        for (int windowStart = 0; windowStart < count; windowStart += ORDER_WINDOW_SIZE) {
+            final Node[] window = new Node[Math.min(ORDER_WINDOW_SIZE, count - windowStart)];
+            int index = 0;
+            // The nodes of a label are iterated in the same order by every pass over the graph
+            for (final Node node : graph.getNodes(label)) {
+                final int position = positions[index++] - windowStart;
+                if (position >= 0 && position < window.length)
+                    window[position] = node;
+            }
+            for (int batchStart = 0; batchStart < window.length; batchStart += options.batchSize) {
+                final int batchEnd = Math.min(window.length, batchStart + options.batchSize);
+                sink.accept(new ImportPipeline.Batch<>(label, new ArrayList<>(
+                        Arrays.asList(window).subList(batchStart, batchEnd))));
+            }
+        }
+    }
+
+    private void importBatch(final DatabaseSessionPool pool, final String label,
+                             final List<Node> batch) throws InterruptedException {
+        metrics.startNodeLabel(label);
+        final ODatabaseDocumentInternal db = pool.acquire();
+        try {
+            final OClass definition = db.getClass(label);
+            final PropertyWriter propertyWriter = propertyWriters.get(label);
+            final List<OVertex> vertices = new ArrayList<>(batch.size());
+            final String clusterName = vertexOrdering != null ? getBatchClusterName(db, definition) : null;
+            db.begin();
+            for (final Node node : batch) {
+                final OVertex orientNode = db.newVertex(definition);
+                try {
+                    propertyWriter.write(node, orientNode);
+                } catch (IllegalArgumentException e) {
+                    // Fall back to setting each property separately to skip only the illegal ones
+                    for (final String propertyKey : node.keySet())
+                        PropertyUtils.setPropertySafe(node, orientNode, propertyKey);
+                }
+                if (clusterName != null)
+                    db.save(orientNode, clusterName);
+                else
+                    db.save(orientNode);
+                vertices.add(orientNode);
+            }
+            db.commit();
+            // Record ids are only final after the commit
+            for (int i = 0; i < batch.size(); i++)
+                nodeIdOrientDBIdMap.put(batch.get(i).getId(), vertices.get(i).getIdentity());
+            metrics.recordNodes(label, batch.size());
+        } catch (RuntimeException e) {
+            if (db.getTransaction().isActive())
+                db.rollback();
+            throw e;
+        } finally {
+            pool.release(db);
+        }
+    }
+
+    private String getBatchClusterName(final ODatabaseDocumentInternal db, final OClass definition) {
+        final int[] clusterIds = definition.getClusterIds();
+        final int batchIndex = batchCounters.computeIfAbsent(definition.getName(), k -> new AtomicInteger())
+                                            .getAndIncrement();
+        return db.getClusterNameById(clusterIds[batchIndex % clusterIds.length]);
+    }
+}
@@ -2,6 +2,8 @@ package de.unibi.agbi.biodwh2.orientdb.server;
 
 import de.unibi.agbi.biodwh2.core.net.BioDWH2Updater;
 import de.unibi.agbi.biodwh2.orientdb.server.model.CmdArgs;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ServerOptions;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -12,9 +14,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.regex.Pattern;
 
 public class OrientDBServer {
     private static final Logger LOGGER = LogManager.getLogger(OrientDBServer.class);
+    private static final Pattern DATABASE_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
 
     private OrientDBServer() {
     }
@@ -34,32 +38,62 @@ public class OrientDBServer {
     private void run(final CmdArgs commandLine) {
         BioDWH2Updater.checkForUpdate("BioDWH2-OrientDB-Server",
                 "https://api.github.com/repos/BioDWH2/BioDWH2-OrientDB-Server/releases");
+        // A restore may be followed by the start command
+        if (commandLine.restore != null && !restoreWorkspaceDatabase(commandLine))
+            return;
         if (commandLine.createStart != null)
             createAndStartWorkspaceServer(commandLine);
         else if (commandLine.start != null)
             startWorkspaceServer(commandLine);
         else if (commandLine.create != null)
             createWorkspaceDatabase(commandLine);
-        else
+        else if (commandLine.snapshot != null)
+            createWorkspaceSnapshot(commandLine);
+        else if (commandLine.restore == null)
             printHelp(commandLine);
     }
 
     private void createAndStartWorkspaceServer(final CmdArgs commandLine) {
         final String workspacePath = commandLine.createStart;
-        if (!verifyWorkspaceExists(workspacePath)) {
+        if (!verifyWorkspaceExists(workspacePath) || !verifyImportOptions(commandLine)) {
             printHelp(commandLine);
             return;
         }
         final OrientDBService service = new OrientDBService(workspacePath);
-        service.deleteOldDatabase();
+        if (!canReuseDatabase(commandLine, service))
+            service.deleteOldDatabase();
         final OrientDBStudio studio = new OrientDBStudio(workspacePath);
         studio.downloadOrientDBStudio();
-        service.startOrientDBService(commandLine.port, commandLine.studioPort);
-        service.createDatabase();
+        if (!service.createDatabase(ImportOptions.fromCmdArgs(commandLine)))
+            return;
         storeWorkspaceHash(workspacePath);
+        service.startOrientDBService(getServerOptions(commandLine));
         service.openBrowser();
     }
 
+    /**
+     * Bulk loads run without write-ahead log and configuration syncs, so an interrupted bulk load cannot be resumed.
+     */
+    private boolean verifyImportOptions(final CmdArgs commandLine) {
+        if (commandLine.resume && commandLine.bulkLoad) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("The --resume option cannot be combined with the --bulk-load option");
+            return false;
+        }
+        if (!ImportOptions.CLUSTER_SELECTION_STRATEGIES.contains(commandLine.clusterSelection)) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Unknown cluster selection strategy '{}', expected one of {}", commandLine.clusterSelection,
+                             ImportOptions.CLUSTER_SELECTION_STRATEGIES);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean canReuseDatabase(final CmdArgs commandLine, final OrientDBService service) {
+        return commandLine.resume && service.canResume() ||
+               commandLine.incremental && service.canUpdateIncrementally();
+    }
+
     private boolean verifyWorkspaceExists(final String workspacePath) {
         if (StringUtils.isEmpty(workspacePath) || !Paths.get(workspacePath).toFile().exists()) {
             if (LOGGER.isErrorEnabled())
@@ -80,8 +114,7 @@ public class OrientDBServer {
             LOGGER.info("Updating workspace OrientDB cache checksum...");
         final Path hashFilePath = Paths.get(workspacePath, "orientdb/checksum.txt");
         try {
-            final String hash = HashUtils.getFastPseudoHashFromFile(
-                    Paths.get(workspacePath, "sources/mapped.db").toString());
+            final String hash = getWorkspaceHash(workspacePath);
             final FileWriter writer = new FileWriter(hashFilePath.toFile());
             writer.write(hash);
             writer.close();
@@ -91,6 +124,11 @@ public class OrientDBServer {
         }
     }
 
+    private static String getWorkspaceHash(final String workspacePath) throws IOException {
+        return HashUtils.getContentHashFromFile(Paths.get(workspacePath, "sources/mapped.db"),
+                                                Paths.get(workspacePath, "orientdb/checksum-cache.properties"));
+    }
+
     private void startWorkspaceServer(final CmdArgs commandLine) {
         final String workspacePath = commandLine.start;
         if (!verifyWorkspaceExists(workspacePath)) {
@@ -102,15 +140,48 @@ public class OrientDBServer {
         final OrientDBService service = new OrientDBService(workspacePath);
         final OrientDBStudio studio = new OrientDBStudio(workspacePath);
         studio.downloadOrientDBStudio();
-        service.startOrientDBService(commandLine.port, commandLine.studioPort);
+        service.startOrientDBService(getServerOptions(commandLine));
         service.openBrowser();
     }
 
+    private ServerOptions getServerOptions(final CmdArgs commandLine) {
+        final ServerOptions options = ServerOptions.fromCmdArgs(commandLine);
+        options.workspaces.entrySet().removeIf(workspace -> !verifyAdditionalWorkspace(workspace.getKey(),
+                                                                                        workspace.getValue()));
+        return options;
+    }
+
+    /**
+     * Whether the database of an additional workspace can be served under the given name. Each database is checked
+     * against its own workspace graph.
+     */
+    private boolean verifyAdditionalWorkspace(final String name, final String workspacePath) {
+        if (!DATABASE_NAME_PATTERN.matcher(name).matches() || OrientDBService.DATABASE_NAME.equals(name)) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Invalid database name '{}' for workspace '{}'", name, workspacePath);
+            return false;
+        }
+        if (!verifyWorkspaceExists(workspacePath))
+            return false;
+        if (!new OrientDBService(workspacePath).databaseExists()) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Workspace '{}' has no OrientDB database, create it with the --create command",
+                             workspacePath);
+            return false;
+        }
+        if (!checkOrientDBDatabaseMatchesWorkspace(workspacePath) && LOGGER.isWarnEnabled())
+            LOGGER.warn("The OrientDB database '{}' is out-of-date and should be recreated with the --create command",
+                        name);
+        return true;
+    }
+
     private boolean checkOrientDBDatabaseMatchesWorkspace(final String workspacePath) {
+        return checkHashMatchesWorkspace(workspacePath, Paths.get(workspacePath, "orientdb/checksum.txt"));
+    }
+
+    private boolean checkHashMatchesWorkspace(final String workspacePath, final Path hashFilePath) {
         try {
-            final String hash = HashUtils.getFastPseudoHashFromFile(
-                    Paths.get(workspacePath, "sources/mapped.db").toString());
-            final Path hashFilePath = Paths.get(workspacePath, "orientdb/checksum.txt");
+            final String hash = getWorkspaceHash(workspacePath);
             if (Files.exists(hashFilePath)) {
                 final String storedHash = new String(Files.readAllBytes(hashFilePath)).trim();
                 return hash.equals(storedHash);
@@ -124,15 +195,52 @@ public class OrientDBServer {
 
     private void createWorkspaceDatabase(final CmdArgs commandLine) {
         final String workspacePath = commandLine.create;
+        if (!verifyWorkspaceExists(workspacePath) || !verifyImportOptions(commandLine)) {
+            printHelp(commandLine);
+            return;
+        }
+        final OrientDBService service = new OrientDBService(workspacePath);
+        if (!canReuseDatabase(commandLine, service))
+            service.deleteOldDatabase();
+        if (service.createDatabase(ImportOptions.fromCmdArgs(commandLine)))
+            storeWorkspaceHash(workspacePath);
+    }
+
+    private void createWorkspaceSnapshot(final CmdArgs commandLine) {
+        final String workspacePath = commandLine.snapshot;
         if (!verifyWorkspaceExists(workspacePath)) {
             printHelp(commandLine);
             return;
         }
+        if (!checkOrientDBDatabaseMatchesWorkspace(workspacePath) && LOGGER.isWarnEnabled())
+            LOGGER.warn("The OrientDB database is out-of-date, the snapshot will not match the workspace graph");
+        new OrientDBService(workspacePath).createSnapshot(getSnapshotFilePath(commandLine, workspacePath));
+    }
+
+    private boolean restoreWorkspaceDatabase(final CmdArgs commandLine) {
+        final String workspacePath = commandLine.restore;
+        if (!verifyWorkspaceExists(workspacePath)) {
+            printHelp(commandLine);
+            return false;
+        }
+        final Path snapshotFilePath = getSnapshotFilePath(commandLine, workspacePath);
+        if (!Files.exists(snapshotFilePath)) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Snapshot '{}' was not found", snapshotFilePath);
+            return false;
+        }
         final OrientDBService service = new OrientDBService(workspacePath);
-        service.deleteOldDatabase();
-        service.startOrientDBService(commandLine.port, commandLine.studioPort);
-        service.createDatabase();
-        storeWorkspaceHash(workspacePath);
-        service.stopOrientDBService();
+        if (!service.restoreSnapshot(snapshotFilePath,
+                                     hashFilePath -> checkHashMatchesWorkspace(workspacePath, hashFilePath)))
+            return false;
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Restored OrientDB database from snapshot '{}'", snapshotFilePath);
+        return true;
+    }
+
+    private static Path getSnapshotFilePath(final CmdArgs commandLine, final String workspacePath) {
+        return commandLine.snapshotFile != null ? Paths.get(commandLine.snapshotFile) : Paths.get(workspacePath,
+                                                                                                  "orientdb",
+                                                                                                  "BioDWH2.snapshot");
     }
 }
@@ -2,26 +2,34 @@ package de.unibi.agbi.biodwh2.orientdb.server;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
-import com.orientechnologies.orient.core.db.ODatabaseSession;
 import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
 import com.orientechnologies.orient.core.db.OrientDBConfig;
-import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.db.OrientDBInternal;
+import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
-import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OImmutableSchema;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.metadata.schema.OType;
-import com.orientechnologies.orient.core.record.OEdge;
-import com.orientechnologies.orient.core.record.OVertex;
-import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.server.OServer;
 import com.orientechnologies.orient.server.OServerMain;
 import com.orientechnologies.orient.server.config.*;
 import de.unibi.agbi.biodwh2.core.lang.Type;
 import de.unibi.agbi.biodwh2.core.model.graph.Edge;
 import de.unibi.agbi.biodwh2.core.model.graph.Graph;
-import de.unibi.agbi.biodwh2.core.model.graph.IndexDescription;
 import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.orientdb.server.model.DeferredIndices;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportCheckpoint;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportOptions;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportState;
+import de.unibi.agbi.biodwh2.orientdb.server.model.IndexConfig;
+import de.unibi.agbi.biodwh2.orientdb.server.model.IndexDefinition;
 import de.unibi.agbi.biodwh2.orientdb.server.model.SecurityConfig;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ServerOptions;
+import de.unibi.agbi.biodwh2.orientdb.server.model.VertexOrder;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -31,11 +39,13 @@ import java.awt.*;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
@@ -46,22 +56,41 @@ import java.util.logging.LogRecord;
  */
 public class OrientDBService extends Formatter {
     private static final Logger LOGGER = LogManager.getLogger(OrientDBService.class);
+    static final String DATABASE_NAME = "BioDWH2";
+    private static final long RECORDS_PER_CLUSTER = 250000;
+    private static final int READ_ONLY_POOL_SIZE = 1000;
 
-    private final String workspacePath;
+    private final Path sourceGraphPath;
     private final Path orientdbPath;
     private final Path databasePath;
     private final Path wwwPath;
     private final Path configPath;
     private final Path securityFilePath;
+    private final Path importStateFilePath;
+    private final Path nodeIdMappingFilePath;
+    private final Path checkpointFilePath;
+    private final Path deferredIndicesFilePath;
+    private final Path indexConfigFilePath;
+    private final Path warmupPlanFilePath;
+    private final Path checksumFilePath;
     private OServer server;
+    private Map<String, OrientDBService> servedDatabases;
+    private boolean servedDatabasesFrozen;
 
     public OrientDBService(final String workspacePath) {
-        this.workspacePath = workspacePath;
+        sourceGraphPath = Paths.get(workspacePath, "sources", "mapped.db");
         orientdbPath = Paths.get(workspacePath, "orientdb");
         databasePath = Paths.get(workspacePath, "orientdb", "orientdb");
         wwwPath = Paths.get(workspacePath, "orientdb", "www");
         configPath = Paths.get(workspacePath, "orientdb", "config");
         securityFilePath = Paths.get(workspacePath, "orientdb", "config", "security.json");
+        importStateFilePath = Paths.get(workspacePath, "orientdb", "import-state.json");
+        nodeIdMappingFilePath = Paths.get(workspacePath, "orientdb", "node-id-mapping.bin");
+        checkpointFilePath = Paths.get(workspacePath, "orientdb", "import-checkpoint.json");
+        deferredIndicesFilePath = Paths.get(workspacePath, "orientdb", "deferred-indices.json");
+        indexConfigFilePath = Paths.get(workspacePath, "orientdb", "index-config.json");
+        warmupPlanFilePath = Paths.get(workspacePath, "orientdb", "warmup-plan.json");
+        checksumFilePath = Paths.get(workspacePath, "orientdb", "checksum.txt");
         injectLogging();
     }
 
@@ -71,24 +100,79 @@ public class OrientDBService extends Formatter {
         return "";
     }
 
-    public void startOrientDBService(final String port, final String studioPort) {
+    /**
+     * Starts the server after warming up the disk cache with all indices and the configured hot classes. The database
+     * of this workspace is served as {@value #DATABASE_NAME} and the databases of the additional workspaces under their
+     * names, all sharing one disk cache.
+     */
+    public void startOrientDBService(final ServerOptions options) {
         if (LOGGER.isInfoEnabled())
             LOGGER.info("Starting OrientDB DBMS on localhost:2424...");
+        final ServerStatus status = new ServerStatus();
+        status.register();
         try {
             System.setProperty("ORIENTDB_HOME", orientdbPath.toString());
             System.setProperty("ORIENTDB_ROOT_PASSWORD", "root");
             Files.createDirectories(databasePath);
             Files.createDirectories(configPath);
             writeSecurityConfigFile();
+            servedDatabases = getServedDatabases(options);
+            final Path serverDatabasePath = servedDatabases.size() > 1 ? linkServedDatabases() : databasePath;
             server = OServerMain.create();
             injectLogging();
-            server.startup(getServerConfig(port, studioPort));
+            if (options.readOnly) {
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("Serving databases {} read-only", servedDatabases.keySet());
+                Orient.instance().addDbLifecycleListener(ReadOnlyHook.lifecycleListener(servedDatabases.keySet()));
+            }
+            server.startup(getServerConfig(options, serverDatabasePath));
+            if (options.readOnly)
+                freezeServedDatabases();
+            if (options.warmupMemory >= 0)
+                warmUpCache(status, options);
             server.activate();
+            status.markReady();
+            for (final Map.Entry<String, OrientDBService> database : servedDatabases.entrySet())
+                if (!options.readOnly)
+                    database.getValue().buildDeferredIndices(server.getDatabases(), database.getKey());
+                else if (Files.exists(database.getValue().deferredIndicesFilePath) && LOGGER.isWarnEnabled())
+                    LOGGER.warn("Deferred indices of database '{}' are not built while serving read-only",
+                                database.getKey());
         } catch (Exception e) {
             LOGGER.error("Failed to start OrientDB service", e);
         }
     }
 
+    private Map<String, OrientDBService> getServedDatabases(final ServerOptions options) {
+        final Map<String, OrientDBService> result = new LinkedHashMap<>();
+        result.put(DATABASE_NAME, this);
+        for (final Map.Entry<String, String> workspace : options.workspaces.entrySet())
+            result.put(workspace.getKey(), new OrientDBService(workspace.getValue()));
+        return result;
+    }
+
+    /**
+     * Links the storages of all served databases into a single directory under their names, as the server opens its
+     * databases from one database path. Links of workspaces which are no longer served are removed.
+     */
+    private Path linkServedDatabases() throws IOException {
+        final Path linksPath = orientdbPath.resolve("databases");
+        Files.createDirectories(linksPath);
+        try (DirectoryStream<Path> links = Files.newDirectoryStream(linksPath, Files::isSymbolicLink)) {
+            for (final Path link : links)
+                Files.delete(link);
+        }
+        for (final Map.Entry<String, OrientDBService> database : servedDatabases.entrySet()) {
+            final Path link = linksPath.resolve(database.getKey());
+            if (Files.exists(link))
+                throw new IOException("Database link '" + link + "' is not a symbolic link");
+            Files.createSymbolicLink(link, database.getValue().databasePath.resolve(DATABASE_NAME).toAbsolutePath());
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Serving database '{}' from '{}'", database.getKey(), database.getValue().orientdbPath);
+        }
+        return linksPath;
+    }
+
     private void writeSecurityConfigFile() throws IOException {
         final ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
@@ -135,15 +219,15 @@ public class OrientDBService extends Formatter {
         return authenticator;
     }
 
-    private OServerConfiguration getServerConfig(final String port, final String studioPort) {
+    private OServerConfiguration getServerConfig(final ServerOptions options, final Path serverDatabasePath) {
         final OServerConfiguration config = new OServerConfiguration();
-        config.network = getNetwork(port, studioPort);
+        config.network = getNetwork(options);
         config.users = getUsers();
-        config.properties = getServerProperties();
+        config.properties = getServerProperties(options, serverDatabasePath);
         return config;
     }
 
-    private OServerNetworkConfiguration getNetwork(final String port, final String studioPort) {
+    private OServerNetworkConfiguration getNetwork(final ServerOptions options) {
         final OServerNetworkConfiguration network = new OServerNetworkConfiguration();
         final OServerNetworkProtocolConfiguration binaryProtocol = new OServerNetworkProtocolConfiguration();
         binaryProtocol.name = "binary";
@@ -154,11 +238,11 @@ public class OrientDBService extends Formatter {
         network.protocols = new ArrayList<>(Arrays.asList(binaryProtocol, httpProtocol));
         final OServerNetworkListenerConfiguration binaryListener = new OServerNetworkListenerConfiguration();
         binaryListener.ipAddress = "0.0.0.0";
-        binaryListener.portRange = validatePort(port, "2424-2430");
+        binaryListener.portRange = validatePort(options.port, "2424-2430");
         binaryListener.protocol = "binary";
         final OServerNetworkListenerConfiguration httpListener = new OServerNetworkListenerConfiguration();
         httpListener.ipAddress = "127.0.0.1";
-        httpListener.portRange = validatePort(studioPort, "2480-2490");
+        httpListener.portRange = validatePort(options.studioPort, "2480-2490");
         httpListener.protocol = "http";
         final OServerCommandConfiguration httpCommand = new OServerCommandConfiguration();
         httpCommand.implementation = "com.orientechnologies.orient.server.network.protocol.http.command.get.OServerCommandGetStaticContent";
@@ -168,7 +252,40 @@ public class OrientDBService extends Formatter {
                                               "Cache-Control: no-cache, no-store, max-age=0, must-revalidate\r\nPragma: no-cache"),
                 new OServerEntryConfiguration("http.cache:default", "Cache-Control: max-age=120")
         };
-        httpListener.commands = new OServerCommandConfiguration[]{httpCommand};
+        final OServerCommandConfiguration streamCommand = new OServerCommandConfiguration();
+        streamCommand.implementation = StreamingQueryCommand.class.getName();
+        streamCommand.pattern = StreamingQueryCommand.PATTERN;
+        streamCommand.parameters = new OServerEntryConfiguration[]{
+                new OServerEntryConfiguration(StreamingQueryCommand.FORMAT_PARAMETER, options.streamFormat.name()),
+                new OServerEntryConfiguration(StreamingQueryCommand.GZIP_PARAMETER,
+                                              String.valueOf(options.streamGzip))
+        };
+        final OServerCommandConfiguration neighborhoodCommand = new OServerCommandConfiguration();
+        neighborhoodCommand.implementation = NeighborhoodCommand.class.getName();
+        neighborhoodCommand.pattern = NeighborhoodCommand.PATTERN;
+        neighborhoodCommand.parameters = new OServerEntryConfiguration[]{
+                new OServerEntryConfiguration(NeighborhoodCommand.THREADS_PARAMETER,
+                                              String.valueOf(options.neighborhoodThreads))
+        };
+        final List<OServerCommandConfiguration> commands = new ArrayList<>(
+                Arrays.asList(httpCommand, streamCommand, neighborhoodCommand));
+        if (options.queryCache > 0) {
+            // Replaces the query commands of the REST API, as commands configured for a listener take precedence
+            // over the built-in commands (see CachedQueryCommandTest)
+            final OServerCommandConfiguration cachedQueryCommand = new OServerCommandConfiguration();
+            cachedQueryCommand.implementation = CachedQueryCommand.class.getName();
+            cachedQueryCommand.pattern = String.join(" ", CachedQueryCommand.PATTERNS);
+            final List<OServerEntryConfiguration> parameters = new ArrayList<>();
+            parameters.add(new OServerEntryConfiguration(CachedQueryCommand.SIZE_PARAMETER,
+                                                         String.valueOf(options.queryCache * 1024L * 1024L)));
+            for (final Map.Entry<String, OrientDBService> database : servedDatabases.entrySet())
+                parameters.add(new OServerEntryConfiguration(
+                        CachedQueryCommand.CHECKSUM_FILE_PARAMETER_PREFIX + database.getKey(),
+                        database.getValue().checksumFilePath.toString()));
+            cachedQueryCommand.parameters = parameters.toArray(new OServerEntryConfiguration[0]);
+            commands.add(cachedQueryCommand);
+        }
+        httpListener.commands = commands.toArray(new OServerCommandConfiguration[0]);
         final OServerParameterConfiguration charsetParameter = new OServerParameterConfiguration();
         charsetParameter.name = "network.http.charset";
         charsetParameter.value = "utf-8";
@@ -203,14 +320,24 @@ public class OrientDBService extends Formatter {
         return result.toArray(new OServerUserConfiguration[0]);
     }
 
-    private OServerEntryConfiguration[] getServerProperties() {
+    private OServerEntryConfiguration[] getServerProperties(final ServerOptions options,
+                                                            final Path serverDatabasePath) {
         final List<OServerEntryConfiguration> result = new ArrayList<>();
         result.add(new OServerEntryConfiguration("server.cache.staticResources", "false"));
         result.add(new OServerEntryConfiguration("log.console.level", "warning"));
         result.add(new OServerEntryConfiguration("log.file.level", "fine"));
         result.add(new OServerEntryConfiguration("plugin.dynamic", "true"));
-        result.add(new OServerEntryConfiguration("server.database.path", databasePath.toString()));
+        result.add(new OServerEntryConfiguration("server.database.path", serverDatabasePath.toString()));
         result.add(new OServerEntryConfiguration("orientdb.www.path", wwwPath.toString()));
+        if (options.diskCache > 0)
+            result.add(new OServerEntryConfiguration("storage.diskCache.bufferSize",
+                                                      String.valueOf(options.diskCache)));
+        if (options.readOnly) {
+            // Nothing is written, so most of the write cache is not needed. The write-ahead log stays enabled for the
+            // other databases of the server, such as the system database.
+            result.add(new OServerEntryConfiguration("storage.diskCache.writeCachePart", "1"));
+            result.add(new OServerEntryConfiguration("db.pool.max", String.valueOf(READ_ONLY_POOL_SIZE)));
+        }
         return result.toArray(new OServerEntryConfiguration[0]);
     }
 
@@ -224,9 +351,30 @@ public class OrientDBService extends Formatter {
         l.addHandler(handler);
     }
 
+    /**
+     * Freezes the storages of the served databases, so every modification, including schema and index changes and
+     * truncations which bypass the {@link ReadOnlyHook}, fails before it reaches the storage.
+     */
+    private void freezeServedDatabases() {
+        final OrientDBInternal context = server.getDatabases();
+        for (final String name : servedDatabases.keySet())
+            try (ODatabaseDocumentInternal db = context.openNoAuthenticate(name, null)) {
+                db.freeze(true);
+            }
+        servedDatabasesFrozen = true;
+    }
+
     public void stopOrientDBService() {
-        if (server != null)
-            server.shutdown();
+        if (server == null)
+            return;
+        if (servedDatabasesFrozen) {
+            final OrientDBInternal context = server.getDatabases();
+            for (final String name : servedDatabases.keySet())
+                try (ODatabaseDocumentInternal db = context.openNoAuthenticate(name, null)) {
+                    db.release();
+                }
+        }
+        server.shutdown();
     }
 
     public void deleteOldDatabase() {
@@ -235,151 +383,548 @@ public class OrientDBService extends Formatter {
 
         try {
             FileUtils.deleteDirectory(databasePath.toFile());
+            Files.deleteIfExists(importStateFilePath);
+            Files.deleteIfExists(nodeIdMappingFilePath);
+            Files.deleteIfExists(checkpointFilePath);
+            Files.deleteIfExists(deferredIndicesFilePath);
         } catch (IOException e) {
             if (LOGGER.isErrorEnabled())
                 LOGGER.error("Failed to remove old database '{}'", databasePath, e);
         }
     }
 
-    public void createDatabase() {
-        if (LOGGER.isInfoEnabled())
-            LOGGER.info("Creating OrientDB database...");
-        server.createDatabase("BioDWH2", ODatabaseType.PLOCAL, OrientDBConfig.defaultConfig());
-        try (ODatabaseDocumentInternal db = server.openDatabase("BioDWH2"); Graph graph = new Graph(
-                Paths.get(workspacePath, "sources/mapped.db"), true)) {
-            Files.createDirectories(databasePath);
-            final HashMap<Long, ORID> nodeIdOrientDBIdMap = new HashMap<>();
-            createNodes(db, graph, nodeIdOrientDBIdMap);
-            createEdges(db, graph, nodeIdOrientDBIdMap);
-            createIndices(db, graph);
+    public boolean databaseExists() {
+        return Files.exists(databasePath.resolve(DATABASE_NAME));
+    }
+
+    /**
+     * Packs the database storage together with its checksum, import state and index files into a snapshot archive.
+     * The database must not be served while the snapshot is created.
+     */
+    public boolean createSnapshot(final Path archiveFilePath) {
+        if (!databaseExists()) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("No database to snapshot in '{}'", databasePath);
+            return false;
+        }
+        try {
+            DatabaseSnapshot.create(orientdbPath, getSnapshotPaths(), archiveFilePath,
+                                    Runtime.getRuntime().availableProcessors());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
             if (LOGGER.isErrorEnabled())
-                LOGGER.error("Failed to create OrientDB database '{}'", databasePath, e);
+                LOGGER.error("Failed to create snapshot '{}'", archiveFilePath, e);
         }
+        return false;
     }
 
-    private void createNodes(final ODatabaseDocumentInternal db, final Graph graph,
-                             final HashMap<Long, ORID> nodeIdOrientDBIdMap) {
-        final String[] labels = graph.getNodeLabels();
-        for (int i = 0; i < labels.length; i++) {
-            final String label = labels[i];
-            if (LOGGER.isInfoEnabled())
-                LOGGER.info("Creating nodes with label '{}' ({}/{})...", label, i + 1, labels.length);
-            // Create a node definition for the label
-            final OClass definition = db.createVertexClass(label);
-            final Map<String, Type> propertyKeyTypes = graph.getPropertyKeyTypesForNodeLabel(label);
-            for (final String key : propertyKeyTypes.keySet())
-                if (!Node.IGNORED_FIELDS.contains(key))
-                    definition.createProperty(key, OType.getTypeByClass(propertyKeyTypes.get(key).getType()));
-            // Create the actual nodes
-            for (final Node node : graph.getNodes(label)) {
-                OVertex orientNode = db.newVertex(definition);
-                for (final String propertyKey : node.keySet())
-                    setPropertySafe(node, orientNode, propertyKey);
-                final ORID id = db.save(orientNode).getIdentity();
-                nodeIdOrientDBIdMap.put(node.getId(), id);
+    private List<Path> getSnapshotPaths() {
+        return Arrays.asList(databasePath.resolve(DATABASE_NAME), checksumFilePath, importStateFilePath,
+                             nodeIdMappingFilePath, deferredIndicesFilePath, indexConfigFilePath,
+                             warmupPlanFilePath);
+    }
+
+    /**
+     * Restores a snapshot archive into a temporary directory next to the workspace's OrientDB directory and replaces the
+     * database with it only if the restored checksum file is accepted by {@code checksumVerifier}. The current database
+     * is kept if the archive is invalid or does not match the workspace.
+     */
+    public boolean restoreSnapshot(final Path archiveFilePath, final Predicate<Path> checksumVerifier) {
+        final Path restorePath = orientdbPath.resolveSibling(orientdbPath.getFileName() + "-restore");
+        try {
+            FileUtils.deleteDirectory(restorePath.toFile());
+            DatabaseSnapshot.restore(archiveFilePath, restorePath, Runtime.getRuntime().availableProcessors());
+            if (!Files.exists(getRestoredPath(restorePath, databasePath.resolve(DATABASE_NAME)))) {
+                if (LOGGER.isErrorEnabled())
+                    LOGGER.error("Snapshot '{}' contains no database", archiveFilePath);
+                return false;
             }
+            if (!checksumVerifier.test(getRestoredPath(restorePath, checksumFilePath))) {
+                if (LOGGER.isErrorEnabled())
+                    LOGGER.error("Snapshot '{}' does not match the workspace graph, the database was not replaced",
+                                 archiveFilePath);
+                return false;
+            }
+            replaceWithRestoredFiles(restorePath);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Failed to restore snapshot '{}'", archiveFilePath, e);
+        } finally {
+            try {
+                FileUtils.deleteDirectory(restorePath.toFile());
+            } catch (IOException e) {
+                if (LOGGER.isWarnEnabled())
+                    LOGGER.warn("Failed to remove restore directory '{}'", restorePath, e);
+            }
+        }
+        return false;
+    }
+
+    private Path getRestoredPath(final Path restorePath, final Path path) {
+        return restorePath.resolve(orientdbPath.relativize(path));
+    }
+
+    /**
+     * Moves the restored files into place. The checksum is moved last, so an interrupted swap leaves a database which
+     * does not match the workspace.
+     */
+    private void replaceWithRestoredFiles(final Path restorePath) throws IOException {
+        Files.deleteIfExists(checksumFilePath);
+        deleteOldDatabase();
+        Files.deleteIfExists(warmupPlanFilePath);
+        for (final Path path : getSnapshotPaths()) {
+            final Path restoredPath = getRestoredPath(restorePath, path);
+            if (path.equals(checksumFilePath) || !Files.exists(restoredPath))
+                continue;
+            Files.createDirectories(path.getParent());
+            Files.deleteIfExists(path);
+            Files.move(restoredPath, path);
         }
+        Files.move(getRestoredPath(restorePath, checksumFilePath), checksumFilePath);
     }
 
-    private void setPropertySafe(final Node node, final OVertex orientNode, final String propertyKey) {
+    /**
+     * Whether a previous incremental import left a database together with its import state and node id mapping.
+     */
+    public boolean canUpdateIncrementally() {
+        return Files.exists(importStateFilePath) && Files.exists(nodeIdMappingFilePath) && Files.exists(
+                databasePath.resolve(DATABASE_NAME));
+    }
+
+    /**
+     * Whether an interrupted import left a database together with its checkpoint and node id mapping and the workspace
+     * graph did not change since.
+     */
+    public boolean canResume() {
+        if (!Files.exists(checkpointFilePath) || !Files.exists(nodeIdMappingFilePath) || !Files.exists(
+                databasePath.resolve(DATABASE_NAME)))
+            return false;
         try {
-            if (!Node.IGNORED_FIELDS.contains(propertyKey)) {
-                Object value = node.getProperty(propertyKey);
-                if (value instanceof Collection)
-                    value = convertCollectionToArray((Collection<?>) value);
-                if (value != null)
-                    orientNode.setProperty(propertyKey, value);
-            }
-        } catch (IllegalArgumentException e) {
+            if (getSourceGraphChecksum().equals(ResumableImport.load(checkpointFilePath).sourceGraphChecksum))
+                return true;
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("The workspace graph changed since the interrupted import, the database is recreated");
+        } catch (IOException e) {
             if (LOGGER.isWarnEnabled())
-                LOGGER.warn("Illegal property '{} -> {}' for node '{}[:{}]'", propertyKey,
-                            node.getProperty(propertyKey), node.getId(), node.getLabel());
+                LOGGER.warn("Failed to read import checkpoint '{}'", checkpointFilePath, e);
         }
+        return false;
     }
 
-    @SuppressWarnings({"SuspiciousToArrayCall"})
-    private Object convertCollectionToArray(final Collection<?> collection) {
-        Class<?> type = null;
-        for (Object t : collection) {
-            if (t != null) {
-                type = t.getClass();
-                break;
+    /**
+     * Creates the database using an embedded OrientDB instance without any network listeners, studio or security
+     * configuration. The resulting database directory is served as-is by {@link #startOrientDBService}.
+     * <p>
+     * The workspace checksum is removed until the import succeeded. If the import fails, the database is removed unless
+     * it can be resumed from its checkpoint.
+     *
+     * @return whether the import succeeded
+     */
+    public boolean createDatabase(final ImportOptions options) {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Creating OrientDB database...");
+        try {
+            Files.deleteIfExists(checksumFilePath);
+            Files.createDirectories(databasePath);
+        } catch (IOException e) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Failed to create OrientDB database '{}'", databasePath, e);
+            return false;
+        }
+        final BulkLoadProfile bulkLoadProfile = options.bulkLoad ? BulkLoadProfile.apply(sourceGraphPath) : null;
+        boolean success = false;
+        try (OrientDB orientDB = new OrientDB("embedded:" + databasePath, OrientDBConfig.defaultConfig())) {
+            injectLogging();
+            final OrientDBInternal context = OrientDBInternal.extract(orientDB);
+            final boolean update = (options.incremental || options.resume) && context.exists(DATABASE_NAME, null,
+                                                                                               null);
+            if (!update)
+                context.create(DATABASE_NAME, null, null, ODatabaseType.PLOCAL, OrientDBConfig.defaultConfig());
+            success = importGraph(context, options, update);
+        } finally {
+            if (bulkLoadProfile != null) {
+                bulkLoadProfile.restore();
+                if (success)
+                    writeCheckpoint();
             }
         }
-        if (type != null) {
-            if (type.equals(String.class))
-                return collection.stream().map(type::cast).toArray(String[]::new);
-            if (type.equals(Boolean.class))
-                return collection.stream().map(type::cast).toArray(Boolean[]::new);
-            if (type.equals(Integer.class))
-                return collection.stream().map(type::cast).toArray(Integer[]::new);
-            if (type.equals(Float.class))
-                return collection.stream().map(type::cast).toArray(Float[]::new);
-            if (type.equals(Long.class))
-                return collection.stream().map(type::cast).toArray(Long[]::new);
-            if (type.equals(Double.class))
-                return collection.stream().map(type::cast).toArray(Double[]::new);
-            if (type.equals(Byte.class))
-                return collection.stream().map(type::cast).toArray(Byte[]::new);
-            if (type.equals(Short.class))
-                return collection.stream().map(type::cast).toArray(Short[]::new);
+        if (!success) {
+            if (options.resume && Files.exists(checkpointFilePath)) {
+                if (LOGGER.isWarnEnabled())
+                    LOGGER.warn("The import failed, continue it with the --resume option");
+            } else
+                deleteOldDatabase();
         }
-        return collection.stream().map(Object::toString).toArray(String[]::new);
+        return success;
     }
 
-    private void createEdges(final ODatabaseDocumentInternal db, final Graph graph,
-                             final HashMap<Long, ORID> nodeIdOrientDBIdMap) {
-        final String[] labels = graph.getEdgeLabels();
-        for (int i = 0; i < labels.length; i++) {
-            final String label = labels[i];
-            if (LOGGER.isInfoEnabled())
-                LOGGER.info("Creating edges with label '{}' ({}/{})...", label, i + 1, labels.length);
-            // Create an edge definition for the label
-            final OClass definition = db.createEdgeClass(label);
-            final Map<String, Type> propertyKeyTypes = graph.getPropertyKeyTypesForEdgeLabel(label);
-            for (final String key : propertyKeyTypes.keySet())
-                if (!Edge.IGNORED_FIELDS.contains(key))
-                    definition.createProperty(key, OType.getTypeByClass(propertyKeyTypes.get(key).getType()));
-            // Create the actual edges
-            for (final Edge edge : graph.getEdges(label)) {
-                final OVertex fromNode = db.getRecord(nodeIdOrientDBIdMap.get(edge.getFromId()));
-                final OVertex toNode = db.getRecord(nodeIdOrientDBIdMap.get(edge.getToId()));
-                final OEdge orientEdge = db.newEdge(fromNode, toNode, definition);
-                for (final String propertyKey : edge.keySet())
-                    if (!Edge.IGNORED_FIELDS.contains(propertyKey)) {
-                        Object value = edge.getProperty(propertyKey);
-                        if (value instanceof Collection)
-                            value = convertCollectionToArray((Collection<?>) value);
-                        if (value != null)
-                            orientEdge.setProperty(propertyKey, value);
-                    }
-                db.save(orientEdge);
+    /**
+     * Reopens the database with the current storage settings and flushes it, so the database starts from a clean
+     * checkpoint when it is served.
+     */
+    private void writeCheckpoint() {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Writing database checkpoint...");
+        try (OrientDB orientDB = new OrientDB("embedded:" + databasePath, OrientDBConfig.defaultConfig());
+             ODatabaseDocumentInternal db = OrientDBInternal.extract(orientDB).openNoAuthenticate(DATABASE_NAME,
+                                                                                                 null)) {
+            db.getStorage().synch();
+        }
+    }
+
+    private boolean importGraph(final OrientDBInternal context, final ImportOptions options, final boolean update) {
+        final ImportMetrics metrics = new ImportMetrics();
+        try (ODatabaseDocumentInternal db = context.openNoAuthenticate(DATABASE_NAME, null);
+             Graph graph = new Graph(sourceGraphPath, true)) {
+            metrics.register();
+            metrics.setExpectedCounts(graph.getNumberOfNodes(), graph.getNumberOfEdges());
+            final ImportCheckpoint checkpoint = update && options.resume && Files.exists(checkpointFilePath) ?
+                                                ResumableImport.load(checkpointFilePath) : null;
+            String[] nodeLabels = graph.getNodeLabels();
+            String[] edgeLabels = graph.getEdgeLabels();
+            ImportState state = null;
+            ImportState previousState = null;
+            IncrementalUpdate incrementalUpdate = null;
+            if (options.incremental) {
+                metrics.startPhase("fingerprints");
+                state = createImportState(graph, options);
+                previousState = checkpoint != null ? checkpoint.previousState : update ? loadImportState() : null;
+                if (previousState != null) {
+                    // A failed update leaves the database in an unknown state, so the next run has to rebuild it
+                    Files.deleteIfExists(importStateFilePath);
+                    incrementalUpdate = new IncrementalUpdate(previousState, state);
+                    // An interrupted update already removed the outdated classes before it was checkpointed
+                    if (checkpoint == null)
+                        incrementalUpdate.removeOutdatedClasses(db);
+                    nodeLabels = incrementalUpdate.getNodeLabelsToImport();
+                    edgeLabels = incrementalUpdate.getEdgeLabelsToImport();
+                }
+            }
+            ResumableImport resumable = null;
+            if (checkpoint != null) {
+                resumable = ResumableImport.resume(checkpointFilePath, checkpoint, db.getStorage());
+                resumable.removeIncompleteWork(db, nodeLabels, edgeLabels);
+                nodeLabels = resumable.getRemainingNodeLabels(nodeLabels);
+                edgeLabels = resumable.getRemainingEdgeLabels(edgeLabels);
+            } else if (options.resume)
+                resumable = ResumableImport.start(checkpointFilePath, getSourceGraphChecksum(), previousState,
+                                                  db.getStorage());
+            try (NodeIdRidMap nodeIdOrientDBIdMap = createNodeIdMap(db, graph, nodeLabels, options)) {
+                metrics.startPhase("nodes");
+                createNodes(context, db, graph, nodeLabels, options, nodeIdOrientDBIdMap, metrics, resumable);
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("Node id mapping holds {} nodes in {} MB of {} memory", nodeIdOrientDBIdMap.size(),
+                                nodeIdOrientDBIdMap.getMemoryFootprint() / (1024 * 1024),
+                                nodeIdOrientDBIdMap.isMemoryMapped() ? "memory-mapped" : "direct");
+                metrics.startPhase("edges");
+                final Map<String, List<String>> endpointLabels = createEdges(db, graph, edgeLabels, options,
+                                                                             nodeIdOrientDBIdMap, metrics, resumable);
+                if (state != null) {
+                    if (incrementalUpdate != null)
+                        for (final String label : state.edgeLabelFingerprints.keySet())
+                            if (incrementalUpdate.isUnchanged(label) && previousState.edgeLabelEndpoints.containsKey(
+                                    label))
+                                state.edgeLabelEndpoints.put(label, previousState.edgeLabelEndpoints.get(label));
+                    if (resumable != null)
+                        state.edgeLabelEndpoints.putAll(resumable.getEdgeLabelEndpoints());
+                    state.edgeLabelEndpoints.putAll(endpointLabels);
+                }
             }
+            metrics.startPhase("indices");
+            createIndices(context, graph, options, resumable);
+            db.activateOnCurrentThread();
+            metrics.endPhase();
+            if (state != null)
+                storeImportState(state);
+            if (resumable != null)
+                resumable.finish();
+            metrics.writeReport(orientdbPath.resolve("import-report.json"), sourceGraphPath, options);
+            return true;
+        } catch (IOException e) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Failed to create OrientDB database '{}'", databasePath, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Interrupted while creating OrientDB database '{}'", databasePath, e);
+        } finally {
+            metrics.unregister();
         }
+        return false;
+    }
+
+    private String getSourceGraphChecksum() throws IOException {
+        return HashUtils.getContentHashFromFile(sourceGraphPath, orientdbPath.resolve("checksum-cache.properties"));
     }
 
-    private void createIndices(final ODatabaseSession db, final Graph graph) {
+    private ImportState createImportState(final Graph graph, final ImportOptions options) {
         if (LOGGER.isInfoEnabled())
-            LOGGER.info("Creating indices...");
-        final IndexDescription[] indices = graph.indexDescriptions();
-        for (final IndexDescription index : indices) {
-            if (LOGGER.isInfoEnabled())
-                LOGGER.info("Creating {} index on '{}' field for {} label '{}'...", index.getType(),
-                            index.getProperty(), index.getTarget(), index.getLabel());
-            if (index.isArrayProperty()) {
-                LOGGER.warn("Skipping array index creation as it is not yet supported.");
+            LOGGER.info("Computing label fingerprints...");
+        final ImportState state = new ImportState();
+        final int threads = Math.max(options.readers, options.workers);
+        state.nodeLabelFingerprints = GraphFingerprints.forNodeLabels(graph, threads);
+        state.edgeLabelFingerprints = GraphFingerprints.forEdgeLabels(graph, threads);
+        return state;
+    }
+
+    private ImportState loadImportState() throws IOException {
+        return new ObjectMapper().readValue(importStateFilePath.toFile(), ImportState.class);
+    }
+
+    private void storeImportState(final ImportState state) throws IOException {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(importStateFilePath.toFile(), state);
+    }
+
+    /**
+     * Creates the node id mapping. A persistent mapping of an incremental or resumed import is reopened, keeping only the
+     * vertices of the classes which were not removed before the import, and grown by the nodes of the imported labels.
+     */
+    private NodeIdRidMap createNodeIdMap(final ODatabaseDocumentInternal db, final Graph graph,
+                                         final String[] nodeLabels, final ImportOptions options) throws IOException {
+        final long numberOfNodes = graph.getNumberOfNodes();
+        if (options.incremental || options.resume) {
+            long newEntries = 0;
+            for (final String label : nodeLabels)
+                newEntries += graph.getNumberOfNodes(label);
+            final OSchema schema = db.getMetadata().getSchema();
+            return NodeIdRidMap.persistent(nodeIdMappingFilePath, newEntries, clusterId -> {
+                final OClass definition = schema.getClassByClusterId(clusterId);
+                return definition != null && definition.isVertexType();
+            });
+        }
+        return options.memoryMappedIdMapping ? NodeIdRidMap.memoryMapped(orientdbPath, numberOfNodes) :
+               NodeIdRidMap.offHeap(numberOfNodes);
+    }
+
+    private void createNodes(final OrientDBInternal context, final ODatabaseDocumentInternal db, final Graph graph,
+                             final String[] labels, final ImportOptions options,
+                             final NodeIdRidMap nodeIdOrientDBIdMap, final ImportMetrics metrics,
+                             final ResumableImport resumable) throws InterruptedException {
+        createNodeClasses(db, graph, labels, options);
+        final NodeImporter importer = new NodeImporter(graph, options, nodeIdOrientDBIdMap, metrics);
+        if (resumable != null)
+            importer.setLabelListener(resumable.nodeLabelListener(nodeIdOrientDBIdMap));
+        if (options.vertexOrder != VertexOrder.GRAPH)
+            importer.setVertexOrdering(VertexOrdering.compute(graph, options.vertexOrder));
+        try (DatabaseSessionPool pool = new DatabaseSessionPool(
+                () -> context.openNoAuthenticate(DATABASE_NAME, null), options.workers)) {
+            importer.importNodes(pool, labels);
+        } finally {
+            db.activateOnCurrentThread();
+        }
+    }
+
+    static void createNodeClasses(final ODatabaseDocumentInternal db, final Graph graph, final String[] labels,
+                                  final ImportOptions options) {
+        for (final String label : labels) {
+            // Create a node definition for the label
+            final OClass definition = createClass(db, label, "V", graph.getNumberOfNodes(label), options);
+            createProperties(definition, graph.getPropertyKeyTypesForNodeLabel(label), Node.IGNORED_FIELDS);
+        }
+    }
+
+    private Map<String, List<String>> createEdges(final ODatabaseDocumentInternal db, final Graph graph,
+                                                  final String[] labels, final ImportOptions options,
+                                                  final NodeIdRidMap nodeIdOrientDBIdMap,
+                                                  final ImportMetrics metrics,
+                                                  final ResumableImport resumable) throws InterruptedException {
+        createEdgeClasses(db, graph, labels, options);
+        final EdgeImporter importer = new EdgeImporter(graph, options, nodeIdOrientDBIdMap, metrics);
+        // The vertex classes are complete at this point, so the snapshot resolves all endpoint clusters
+        final OImmutableSchema schema = db.getMetadata().getImmutableSchemaSnapshot();
+        if (resumable != null)
+            importer.setLabelListener(resumable.edgeLabelListener(label -> importer.getEndpointLabels(schema, label)));
+        importer.importEdges(db, labels);
+        return importer.getEndpointLabels(schema);
+    }
+
+    static void createEdgeClasses(final ODatabaseDocumentInternal db, final Graph graph, final String[] labels,
+                                  final ImportOptions options) {
+        for (final String label : labels) {
+            // Create an edge definition for the label
+            final OClass definition = createClass(db, label, "E", graph.getNumberOfEdges(label), options);
+            createProperties(definition, graph.getPropertyKeyTypesForEdgeLabel(label), Edge.IGNORED_FIELDS);
+        }
+    }
+
+    /**
+     * Large labels are split across several clusters, so concurrent inserts do not contend on a single cluster. Every
+     * {@link #RECORDS_PER_CLUSTER} records get their own cluster, up to {@link ImportOptions#maxClusters}.
+     */
+    private static OClass createClass(final ODatabaseDocumentInternal db, final String label, final String superClass,
+                                      final long numberOfRecords, final ImportOptions options) {
+        final OSchema schema = db.getMetadata().getSchema();
+        final int clusters = getClusterCount(numberOfRecords, options.maxClusters);
+        final OClass definition = schema.createClass(label, clusters, schema.getClass(superClass));
+        definition.setClusterSelection(options.clusterSelection);
+        if (clusters > 1 && LOGGER.isInfoEnabled())
+            LOGGER.info("Using {} clusters for {} records with label '{}'", clusters, numberOfRecords, label);
+        return definition;
+    }
+
+    private static int getClusterCount(final long numberOfRecords, final int maxClusters) {
+        final long clusters = (numberOfRecords + RECORDS_PER_CLUSTER - 1) / RECORDS_PER_CLUSTER;
+        return (int) Math.max(1, Math.min(clusters, maxClusters));
+    }
+
+    /**
+     * Arrays and lists are declared as embedded lists and sets as embedded sets. The element type is declared as
+     * linked type where it is known, which is required to index the collection by its values.
+     */
+    private static void createProperties(final OClass definition, final Map<String, Type> propertyKeyTypes,
+                                         final Collection<String> ignoredFields) {
+        for (final Map.Entry<String, Type> entry : propertyKeyTypes.entrySet()) {
+            if (ignoredFields.contains(entry.getKey()))
                 continue;
+            final Class<?> type = entry.getValue().getType();
+            if (type != null && type.isArray())
+                definition.createProperty(entry.getKey(), OType.EMBEDDEDLIST,
+                                          OType.getTypeByClass(type.getComponentType()));
+            else if (type != null && List.class.isAssignableFrom(type))
+                definition.createProperty(entry.getKey(), OType.EMBEDDEDLIST);
+            else if (type != null && Set.class.isAssignableFrom(type))
+                definition.createProperty(entry.getKey(), OType.EMBEDDEDSET);
+            else
+                definition.createProperty(entry.getKey(), OType.getTypeByClass(type));
+        }
+    }
+
+    /**
+     * Builds the priority indices, or all indices if no priority is given. The remaining indices are deferred and built
+     * in the background once the server is started.
+     */
+    private void createIndices(final OrientDBInternal context, final Graph graph, final ImportOptions options,
+                               final ResumableImport resumable) throws InterruptedException, IOException {
+        final List<IndexDefinition> indices = new ArrayList<>();
+        final DeferredIndices deferredIndices = new DeferredIndices();
+        deferredIndices.threads = options.indexThreads;
+        for (final IndexDefinition definition : IndexBuilder.configure(IndexBuilder.fromGraph(graph),
+                                                                        loadIndexConfig())) {
+            if (options.priorityIndices == null || options.priorityIndices.contains(IndexBuilder.getName(definition)))
+                indices.add(definition);
+            else
+                deferredIndices.indices.add(definition);
+        }
+        final IndexBuilder builder = new IndexBuilder(() -> context.openNoAuthenticate(DATABASE_NAME, null),
+                                                      options.indexThreads);
+        if (resumable != null)
+            builder.setListener(resumable.indexListener());
+        builder.build(indices);
+        if (deferredIndices.indices.isEmpty())
+            Files.deleteIfExists(deferredIndicesFilePath);
+        else {
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Deferring {} indices until the server is started", deferredIndices.indices.size());
+            storeDeferredIndices(deferredIndices);
+        }
+    }
+
+    /**
+     * Reads the optional index configuration of the workspace. An unreadable configuration is reported and the indices
+     * of the workspace graph are built as-is.
+     */
+    private IndexConfig loadIndexConfig() {
+        if (Files.exists(indexConfigFilePath)) {
+            try {
+                return new ObjectMapper().readValue(indexConfigFilePath.toFile(), IndexConfig.class);
+            } catch (IOException e) {
+                if (LOGGER.isErrorEnabled())
+                    LOGGER.error("Failed to read index configuration '{}'", indexConfigFilePath, e);
             }
-            final OClass.INDEX_TYPE type = index.getType() == IndexDescription.Type.UNIQUE ? OClass.INDEX_TYPE.UNIQUE :
-                                           OClass.INDEX_TYPE.NOTUNIQUE;
-            final ODocument metadata = new ODocument().field("ignoreNullValues", true);
-            final OProperty propertyDefinition = db.getClass(index.getLabel()).getProperty(index.getProperty());
-            if (propertyDefinition != null)
-                propertyDefinition.createIndex(type, metadata);
-            else if (LOGGER.isErrorEnabled())
-                LOGGER.error("Failed to create index on undefined property '{}'", index.getProperty());
         }
+        return new IndexConfig();
+    }
+
+    private void storeDeferredIndices(final DeferredIndices deferredIndices) throws IOException {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(deferredIndicesFilePath.toFile(), deferredIndices);
+    }
+
+    /**
+     * Warms the served databases one after another. They share the disk cache, so each is warmed with an equal part of
+     * the memory budget.
+     */
+    private void warmUpCache(final ServerStatus status, final ServerOptions options) {
+        final long diskCacheSize = options.diskCache > 0 ? options.diskCache :
+                                   OGlobalConfiguration.DISK_CACHE_SIZE.getValueAsLong();
+        final long memoryBudget = (options.warmupMemory > 0 ? options.warmupMemory : diskCacheSize / 2) * 1024L *
+                                  1024L / servedDatabases.size();
+        for (final Map.Entry<String, OrientDBService> database : servedDatabases.entrySet())
+            database.getValue().warmUpCache(server.getDatabases(), database.getKey(), status, options.warmupClasses,
+                                            memoryBudget);
+    }
+
+    private void warmUpCache(final OrientDBInternal context, final String name, final ServerStatus status,
+                             final List<String> warmupClasses, final long memoryBudget) {
+        if (!context.exists(name, null, null))
+            return;
+        final long start = System.currentTimeMillis();
+        final CacheWarmup warmup = new CacheWarmup(() -> context.openNoAuthenticate(name, null),
+                                                   databasePath.resolve(DATABASE_NAME), warmupPlanFilePath,
+                                                   Runtime.getRuntime().availableProcessors());
+        try {
+            final long warmedBytes = warmup.warm(warmup.getPlan(warmupClasses), memoryBudget);
+            status.warmupCompleted(System.currentTimeMillis() - start, warmedBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to warm up the disk cache with database '{}'", name, e);
+        }
+    }
+
+    /**
+     * Builds the deferred indices on a background thread while the server already accepts queries. Indices which fail
+     * stay deferred and are retried on the next start.
+     */
+    private void buildDeferredIndices(final OrientDBInternal context, final String name) {
+        if (!Files.exists(deferredIndicesFilePath))
+            return;
+        final DeferredIndices deferredIndices;
+        try {
+            deferredIndices = new ObjectMapper().readValue(deferredIndicesFilePath.toFile(), DeferredIndices.class);
+        } catch (IOException e) {
+            if (LOGGER.isErrorEnabled())
+                LOGGER.error("Failed to read deferred indices '{}'", deferredIndicesFilePath, e);
+            return;
+        }
+        final Thread thread = new Thread(() -> {
+            try {
+                final IndexBuilder builder = new IndexBuilder(() -> context.openNoAuthenticate(name, null),
+                                                              deferredIndices.threads);
+                deferredIndices.indices = builder.build(deferredIndices.indices);
+                if (deferredIndices.indices.isEmpty())
+                    Files.deleteIfExists(deferredIndicesFilePath);
+                else
+                    storeDeferredIndices(deferredIndices);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (LOGGER.isErrorEnabled())
+                    LOGGER.error("Failed to update deferred indices '{}'", deferredIndicesFilePath, e);
+            }
+        }, "deferred-index-builder-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static void dropClass(final ODatabaseDocumentInternal db, final String label) {
+        final OClass definition = db.getMetadata().getSchema().getClass(label);
+        if (definition == null)
+            return;
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Removing class '{}'...", label);
+        for (final OIndex index : definition.getIndexes())
+            db.command("DROP INDEX `" + index.getName() + "`").close();
+        db.command("DROP CLASS `" + label + "` UNSAFE").close();
     }
 
     public void openBrowser() {
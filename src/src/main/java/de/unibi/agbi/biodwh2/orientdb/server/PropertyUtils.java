@@ -0,0 +1,73 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.record.OElement;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+final class PropertyUtils {
+    private static final Logger LOGGER = LogManager.getLogger(PropertyUtils.class);
+    private static final Set<Class<?>> ARRAY_ELEMENT_TYPES = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Integer.class, Float.class, Long.class, Double.class, Byte.class,
+            Short.class));
+
+    private PropertyUtils() {
+    }
+
+    static void setPropertySafe(final Node node, final OElement orientNode, final String propertyKey) {
+        try {
+            if (!Node.IGNORED_FIELDS.contains(propertyKey)) {
+                Object value = node.getProperty(propertyKey);
+                if (value instanceof Collection)
+                    value = convertCollectionToArray((Collection<?>) value);
+                if (value != null)
+                    orientNode.setProperty(propertyKey, value);
+            }
+        } catch (IllegalArgumentException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Illegal property '{} -> {}' for node '{}[:{}]'", propertyKey,
+                            node.getProperty(propertyKey), node.getId(), node.getLabel());
+        }
+    }
+
+    /**
+     * Copies the collection into an array of the class of its elements. Collections of other or mixed element classes
+     * are copied into a string array.
+     */
+    static Object convertCollectionToArray(final Collection<?> collection) {
+        final Class<?> type = getElementClass(collection);
+        if (type != null && ARRAY_ELEMENT_TYPES.contains(type)) {
+            final Object[] result = (Object[]) Array.newInstance(type, collection.size());
+            int i = 0;
+            for (final Object element : collection)
+                result[i++] = element;
+            return result;
+        }
+        final String[] result = new String[collection.size()];
+        int i = 0;
+        for (final Object element : collection)
+            result[i++] = element != null ? element.toString() : null;
+        return result;
+    }
+
+    /**
+     * @return the class of all non-null elements or null if there are none or they differ
+     */
+    private static Class<?> getElementClass(final Collection<?> collection) {
+        Class<?> result = null;
+        for (final Object element : collection)
+            if (element != null) {
+                if (result == null)
+                    result = element.getClass();
+                else if (element.getClass() != result)
+                    return null;
+            }
+        return result;
+    }
+}
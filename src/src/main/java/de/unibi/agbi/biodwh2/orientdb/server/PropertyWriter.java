@@ -0,0 +1,81 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.record.OElement;
+import de.unibi.agbi.biodwh2.core.io.mvstore.MVStoreModel;
+import de.unibi.agbi.biodwh2.core.lang.Type;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import org.apache.commons.lang3.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Writes the properties of all nodes or edges of a single label. The property keys and their element types are taken
+ * once from the label schema, so ignored fields are filtered up front and lists which already hold the declared
+ * element type are passed to OrientDB as-is instead of being copied into boxed arrays.
+ */
+final class PropertyWriter {
+    private final String[] keys;
+    private final Class<?>[] elementTypes;
+
+    private PropertyWriter(final Map<String, Type> propertyKeyTypes, final Collection<String> ignoredFields) {
+        final List<String> keyList = new ArrayList<>(propertyKeyTypes.size());
+        final List<Class<?>> elementTypeList = new ArrayList<>(propertyKeyTypes.size());
+        for (final Map.Entry<String, Type> entry : propertyKeyTypes.entrySet()) {
+            if (ignoredFields.contains(entry.getKey()))
+                continue;
+            keyList.add(entry.getKey());
+            final Class<?> type = entry.getValue().getType();
+            // Elements of primitive array types such as int[] are read back boxed
+            final Class<?> elementType = type != null && type.isArray() ? type.getComponentType() : null;
+            elementTypeList.add(ClassUtils.primitiveToWrapper(elementType));
+        }
+        keys = keyList.toArray(new String[0]);
+        elementTypes = elementTypeList.toArray(new Class<?>[0]);
+    }
+
+    static PropertyWriter forNodeLabel(final Graph graph, final String label) {
+        return new PropertyWriter(graph.getPropertyKeyTypesForNodeLabel(label), Node.IGNORED_FIELDS);
+    }
+
+    static PropertyWriter forEdgeLabel(final Graph graph, final String label) {
+        return new PropertyWriter(graph.getPropertyKeyTypesForEdgeLabel(label), Edge.IGNORED_FIELDS);
+    }
+
+    boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    void write(final MVStoreModel source, final OElement target) {
+        for (int i = 0; i < keys.length; i++) {
+            final Object value = source.getProperty(keys[i]);
+            if (value == null)
+                continue;
+            if (value instanceof Collection)
+                target.setProperty(keys[i], convertCollection((Collection<?>) value, elementTypes[i]));
+            else
+                target.setProperty(keys[i], value);
+        }
+    }
+
+    private static Object convertCollection(final Collection<?> collection, final Class<?> elementType) {
+        if (elementType != null && collection instanceof List && collection instanceof RandomAccess &&
+            containsOnly((List<?>) collection, elementType))
+            return collection;
+        return PropertyUtils.convertCollectionToArray(collection);
+    }
+
+    private static boolean containsOnly(final List<?> list, final Class<?> elementType) {
+        for (int i = 0; i < list.size(); i++) {
+            final Object element = list.get(i);
+            if (element != null && element.getClass() != elementType)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of serialized query results shared by all databases of the server. A database only changes
+ * when its workspace is created again, so the entries are tied to the workspace checksum instead of tracking writes:
+ * whenever the checksum stored by the create commands differs from the one the entries of a database were cached for,
+ * the entries of that database are invalidated. The checksum files are checked at most once per
+ * {@value #CHECKSUM_CHECK_INTERVAL_MILLIS} ms.
+ */
+final class QueryResultCache implements QueryResultCacheMXBean {
+    private static final Logger LOGGER = LogManager.getLogger(QueryResultCache.class);
+    static final String OBJECT_NAME = "de.unibi.agbi.biodwh2.orientdb.server:type=QueryResultCache";
+    private static final long CHECKSUM_CHECK_INTERVAL_MILLIS = 10000;
+
+    private final long maxSizeBytes;
+    private final Map<String, Path> checksumFilePaths;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private long sizeBytes;
+    private final Map<String, String> checksums = new HashMap<>();
+    private long lastChecksumCheckMillis;
+
+    /**
+     * @param checksumFilePaths workspace checksum files by database name
+     */
+    QueryResultCache(final long maxSizeBytes, final Map<String, Path> checksumFilePaths) {
+        this.maxSizeBytes = maxSizeBytes;
+        this.checksumFilePaths = checksumFilePaths;
+        for (final Map.Entry<String, Path> entry : checksumFilePaths.entrySet())
+            checksums.put(entry.getKey(), readChecksum(entry.getValue()));
+        lastChecksumCheckMillis = System.currentTimeMillis();
+    }
+
+    void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to register query result cache with JMX", e);
+        }
+    }
+
+    synchronized String get(final String database, final String key) {
+        invalidateIfChecksumChanged();
+        final String result = entries.get(getKey(database, key));
+        if (result != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return result;
+    }
+
+    synchronized void put(final String database, final String key, final String result) {
+        put(getKey(database, key), result);
+    }
+
+    private void put(final String key, final String result) {
+        final long size = getSize(key, result);
+        // A single result larger than the whole cache would only evict everything else
+        if (size > maxSizeBytes)
+            return;
+        final String previous = entries.put(key, result);
+        if (previous != null)
+            sizeBytes -= getSize(key, previous);
+        sizeBytes += size;
+        final Iterator<Map.Entry<String, String>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            final Map.Entry<String, String> eldest = iterator.next();
+            sizeBytes -= getSize(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String getKey(final String database, final String key) {
+        return database + '\n' + key;
+    }
+
+    private static long getSize(final String key, final String result) {
+        return (long) (key.length() + result.length()) * Character.BYTES;
+    }
+
+    private void invalidateIfChecksumChanged() {
+        final long now = System.currentTimeMillis();
+        if (now - lastChecksumCheckMillis < CHECKSUM_CHECK_INTERVAL_MILLIS)
+            return;
+        lastChecksumCheckMillis = now;
+        for (final Map.Entry<String, Path> entry : checksumFilePaths.entrySet()) {
+            final String currentChecksum = readChecksum(entry.getValue());
+            if (Objects.equals(currentChecksum, checksums.get(entry.getKey())))
+                continue;
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Workspace checksum of database '{}' changed, invalidating its cached query results",
+                            entry.getKey());
+            checksums.put(entry.getKey(), currentChecksum);
+            invalidate(entry.getKey());
+        }
+    }
+
+    private static String readChecksum(final Path checksumFilePath) {
+        try {
+            return Files.exists(checksumFilePath) ? new String(Files.readAllBytes(checksumFilePath)).trim() : null;
+        } catch (IOException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to read workspace checksum '{}'", checksumFilePath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Removes all entries, for example after a write to a database bypassed the checksum.
+     */
+    synchronized void invalidate() {
+        if (entries.isEmpty())
+            return;
+        entries.clear();
+        sizeBytes = 0;
+        invalidations.incrementAndGet();
+    }
+
+    private void invalidate(final String database) {
+        final String prefix = getKey(database, "");
+        boolean removed = false;
+        final Iterator<Map.Entry<String, String>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, String> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                sizeBytes -= getSize(entry.getKey(), entry.getValue());
+                iterator.remove();
+                removed = true;
+            }
+        }
+        if (removed)
+            invalidations.incrementAndGet();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    @Override
+    public synchronized Map<String, String> getChecksums() {
+        return new TreeMap<>(checksums);
+    }
+
+    @Override
+    public void clear() {
+        invalidate();
+    }
+}
@@ -0,0 +1,26 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import java.util.Map;
+
+/**
+ * Query result cache statistics exposed over JMX as {@value QueryResultCache#OBJECT_NAME} while the server is running.
+ */
+public interface QueryResultCacheMXBean {
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getInvalidations();
+
+    int getEntries();
+
+    long getSizeBytes();
+
+    long getMaxSizeBytes();
+
+    Map<String, String> getChecksums();
+
+    void clear();
+}
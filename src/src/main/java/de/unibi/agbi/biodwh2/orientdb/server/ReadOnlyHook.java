@@ -0,0 +1,75 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.ODatabaseInternal;
+import com.orientechnologies.orient.core.db.ODatabaseLifecycleListener;
+import com.orientechnologies.orient.core.exception.OSecurityAccessException;
+import com.orientechnologies.orient.core.hook.ORecordHookAbstract;
+import com.orientechnologies.orient.core.record.ORecord;
+
+import java.util.Collection;
+
+/**
+ * Rejects every record write of the sessions opened while the server serves the databases read-only. The hook is
+ * registered on each session of a served database when it is opened, so writes fail with a security error before they
+ * reach the storage. Other databases of the server, such as the system database, are not affected.
+ * <p>
+ * Schema and index changes and truncations do not pass the hook and are rejected by freezing the storage instead.
+ */
+final class ReadOnlyHook extends ORecordHookAbstract {
+    private final String databaseName;
+
+    private ReadOnlyHook(final String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    static ODatabaseLifecycleListener lifecycleListener(final Collection<String> databaseNames) {
+        return new ODatabaseLifecycleListener() {
+            @Override
+            public PRIORITY getPriority() {
+                return PRIORITY.FIRST;
+            }
+
+            @Override
+            public void onCreate(final ODatabaseInternal database) {
+            }
+
+            @Override
+            public void onOpen(final ODatabaseInternal database) {
+                if (databaseNames.contains(database.getName()))
+                    database.registerHook(new ReadOnlyHook(database.getName()));
+            }
+
+            @Override
+            public void onClose(final ODatabaseInternal database) {
+            }
+
+            @Override
+            public void onDrop(final ODatabaseInternal database) {
+            }
+        };
+    }
+
+    @Override
+    public DISTRIBUTED_EXECUTION_MODE getDistributedExecutionMode() {
+        return DISTRIBUTED_EXECUTION_MODE.BOTH;
+    }
+
+    @Override
+    public RESULT onRecordBeforeCreate(final ORecord record) {
+        throw rejectWrite();
+    }
+
+    @Override
+    public RESULT onRecordBeforeUpdate(final ORecord record) {
+        throw rejectWrite();
+    }
+
+    @Override
+    public RESULT onRecordBeforeDelete(final ORecord record) {
+        throw rejectWrite();
+    }
+
+    private OSecurityAccessException rejectWrite() {
+        return new OSecurityAccessException(databaseName, "Database '" + databaseName + "' is served read-only");
+    }
+}
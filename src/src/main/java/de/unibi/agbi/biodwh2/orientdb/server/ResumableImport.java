@@ -0,0 +1,184 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.storage.OStorage;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportCheckpoint;
+import de.unibi.agbi.biodwh2.orientdb.server.model.ImportState;
+import de.unibi.agbi.biodwh2.orientdb.server.model.IndexDefinition;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Records the progress of an import in a checkpoint file so that an interrupted import can be resumed. Node and edge
+ * labels and indices are recorded as completed only after the node id mapping and the storage were flushed, so the
+ * checkpoint never runs ahead of the data on disk. When resuming, the classes of incomplete labels and indices which
+ * were not completed are removed and created again.
+ */
+final class ResumableImport {
+    private static final Logger LOGGER = LogManager.getLogger(ResumableImport.class);
+
+    private final Path checkpointFilePath;
+    private final ImportCheckpoint checkpoint;
+    private final OStorage storage;
+
+    private ResumableImport(final Path checkpointFilePath, final ImportCheckpoint checkpoint, final OStorage storage) {
+        this.checkpointFilePath = checkpointFilePath;
+        this.checkpoint = checkpoint;
+        this.storage = storage;
+    }
+
+    static ResumableImport start(final Path checkpointFilePath, final String sourceGraphChecksum,
+                                 final ImportState previousState, final OStorage storage) throws IOException {
+        final ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.sourceGraphChecksum = sourceGraphChecksum;
+        checkpoint.previousState = previousState;
+        final ResumableImport result = new ResumableImport(checkpointFilePath, checkpoint, storage);
+        result.store();
+        return result;
+    }
+
+    static ResumableImport resume(final Path checkpointFilePath, final ImportCheckpoint checkpoint,
+                                  final OStorage storage) {
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Resuming import with {} node labels, {} edge labels and {} indices already completed",
+                        checkpoint.completedNodeLabels.size(), checkpoint.completedEdgeLabels.size(),
+                        checkpoint.completedIndices.size());
+        return new ResumableImport(checkpointFilePath, checkpoint, storage);
+    }
+
+    static ImportCheckpoint load(final Path checkpointFilePath) throws IOException {
+        return new ObjectMapper().readValue(checkpointFilePath.toFile(), ImportCheckpoint.class);
+    }
+
+    private synchronized void store() throws IOException {
+        final Path temporaryFilePath = checkpointFilePath.resolveSibling(checkpointFilePath.getFileName() + ".tmp");
+        final ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(temporaryFilePath.toFile(), checkpoint);
+        Files.move(temporaryFilePath, checkpointFilePath, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    String[] getRemainingNodeLabels(final String[] labels) {
+        return getRemaining(labels, checkpoint.completedNodeLabels);
+    }
+
+    String[] getRemainingEdgeLabels(final String[] labels) {
+        return getRemaining(labels, checkpoint.completedEdgeLabels);
+    }
+
+    private static String[] getRemaining(final String[] labels, final Set<String> completed) {
+        final List<String> result = new ArrayList<>();
+        for (final String label : labels)
+            if (!completed.contains(label))
+                result.add(label);
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Removes everything the interrupted import wrote for labels which are not completed. Edges of started edge labels
+     * may already be linked in any vertex, so their links are removed from all vertices.
+     */
+    void removeIncompleteWork(final ODatabaseDocumentInternal db, final String[] nodeLabels,
+                              final String[] edgeLabels) {
+        for (final String label : getRemainingEdgeLabels(edgeLabels)) {
+            if (checkpoint.startedEdgeLabels.contains(label)) {
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("Removing incomplete edges with label '{}'...", label);
+                db.command("UPDATE V REMOVE `out_" + label + "`, `in_" + label + "`").close();
+            }
+            OrientDBService.dropClass(db, label);
+        }
+        for (final String label : getRemainingNodeLabels(nodeLabels))
+            OrientDBService.dropClass(db, label);
+        for (final String index : checkpoint.startedIndices)
+            if (!checkpoint.completedIndices.contains(index)) {
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("Removing incomplete index '{}'...", index);
+                db.command("DROP INDEX `" + index + "` IF EXISTS").close();
+            }
+    }
+
+    ImportPipeline.LabelListener nodeLabelListener(final NodeIdRidMap nodeIdOrientDBIdMap) {
+        return new ImportPipeline.LabelListener() {
+            @Override
+            public void labelStarted(final String label) {
+                // Incomplete node labels are always removed when resuming
+            }
+
+            @Override
+            public void labelCompleted(final String label) throws IOException {
+                synchronized (ResumableImport.this) {
+                    nodeIdOrientDBIdMap.flush();
+                    storage.synch();
+                    checkpoint.completedNodeLabels.add(label);
+                    store();
+                }
+            }
+        };
+    }
+
+    ImportPipeline.LabelListener edgeLabelListener(final Function<String, List<String>> endpointLabels) {
+        return new ImportPipeline.LabelListener() {
+            @Override
+            public void labelStarted(final String label) throws IOException {
+                synchronized (ResumableImport.this) {
+                    checkpoint.startedEdgeLabels.add(label);
+                    store();
+                }
+            }
+
+            @Override
+            public void labelCompleted(final String label) throws IOException {
+                synchronized (ResumableImport.this) {
+                    storage.synch();
+                    checkpoint.edgeLabelEndpoints.put(label, endpointLabels.apply(label));
+                    checkpoint.completedEdgeLabels.add(label);
+                    store();
+                }
+            }
+        };
+    }
+
+    IndexBuilder.Listener indexListener() {
+        return new IndexBuilder.Listener() {
+            @Override
+            public void indexStarted(final IndexDefinition definition) throws IOException {
+                synchronized (ResumableImport.this) {
+                    checkpoint.startedIndices.add(IndexBuilder.getName(definition));
+                    store();
+                }
+            }
+
+            @Override
+            public void indexCompleted(final IndexDefinition definition) throws IOException {
+                synchronized (ResumableImport.this) {
+                    storage.synch();
+                    checkpoint.completedIndices.add(IndexBuilder.getName(definition));
+                    store();
+                }
+            }
+        };
+    }
+
+    synchronized Map<String, List<String>> getEdgeLabelEndpoints() {
+        return new HashMap<>(checkpoint.edgeLabelEndpoints);
+    }
+
+    void finish() throws IOException {
+        Files.deleteIfExists(checkpointFilePath);
+    }
+}
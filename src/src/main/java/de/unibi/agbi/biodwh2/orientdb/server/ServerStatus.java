@@ -0,0 +1,71 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Tracks the start of the server. The server is ready once the cache warm-up finished and it accepts connections.
+ */
+final class ServerStatus implements ServerStatusMXBean {
+    private static final Logger LOGGER = LogManager.getLogger(ServerStatus.class);
+    static final String OBJECT_NAME = "de.unibi.agbi.biodwh2.orientdb.server:type=ServerStatus";
+
+    private final long startMillis = System.currentTimeMillis();
+    private volatile boolean ready;
+    private volatile long timeToReadyMillis = -1;
+    private volatile long warmupMillis;
+    private volatile long warmedBytes;
+
+    void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Failed to register server status with JMX", e);
+        }
+    }
+
+    /**
+     * Adds the warm-up of one database, as the databases of a server are warmed one after another.
+     */
+    void warmupCompleted(final long millis, final long bytes) {
+        warmupMillis += millis;
+        warmedBytes += bytes;
+    }
+
+    void markReady() {
+        timeToReadyMillis = System.currentTimeMillis() - startMillis;
+        ready = true;
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("OrientDB server is ready after {} ms", timeToReadyMillis);
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public long getTimeToReadyMillis() {
+        return timeToReadyMillis;
+    }
+
+    @Override
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    @Override
+    public long getWarmedBytes() {
+        return warmedBytes;
+    }
+}
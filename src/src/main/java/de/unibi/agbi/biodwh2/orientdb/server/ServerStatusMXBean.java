@@ -0,0 +1,14 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+/**
+ * Server state exposed over JMX as {@value ServerStatus#OBJECT_NAME} while the server is running.
+ */
+public interface ServerStatusMXBean {
+    boolean isReady();
+
+    long getTimeToReadyMillis();
+
+    long getWarmupMillis();
+
+    long getWarmedBytes();
+}
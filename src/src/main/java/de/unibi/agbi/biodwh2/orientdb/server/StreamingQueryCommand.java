@@ -0,0 +1,189 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.executor.OResult;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import com.orientechnologies.orient.server.config.OServerCommandConfiguration;
+import com.orientechnologies.orient.server.config.OServerEntryConfiguration;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpRequest;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpResponse;
+import com.orientechnologies.orient.server.network.protocol.http.OHttpUtils;
+import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommandAuthenticatedDbAbstract;
+import de.unibi.agbi.biodwh2.orientdb.server.model.StreamFormat;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP command streaming the results of a read-only SQL query from the result cursor instead of materializing the
+ * whole result set as JSON. The query is posted as the request body to {@code /stream/<database>} and the format can be
+ * selected with the {@code format} parameter ({@code ndjson} or {@code binary}). The response is sent with chunked
+ * transfer encoding, one chunk per {@value #CHUNK_SIZE} bytes, and compressed with gzip if enabled and accepted by the
+ * client.
+ */
+public class StreamingQueryCommand extends OServerCommandAuthenticatedDbAbstract {
+    private static final Logger LOGGER = LogManager.getLogger(StreamingQueryCommand.class);
+    static final String PATTERN = "POST|stream/*";
+    static final String FORMAT_PARAMETER = "format";
+    static final String GZIP_PARAMETER = "gzip";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String CONTENT_NDJSON = "application/x-ndjson";
+    private static final String CONTENT_BINARY = "application/octet-stream";
+
+    private StreamFormat defaultFormat = StreamFormat.NDJSON;
+    private boolean gzip;
+
+    public StreamingQueryCommand(final OServerCommandConfiguration configuration) {
+        for (final OServerEntryConfiguration parameter : configuration.parameters)
+            if (FORMAT_PARAMETER.equals(parameter.name)) {
+                defaultFormat = parseFormat(parameter.value);
+                if (defaultFormat == null)
+                    throw new IllegalArgumentException(
+                            "Invalid default format '" + parameter.value + "' of the streaming query command, " +
+                            "expected one of " + getFormatNames());
+            } else if (GZIP_PARAMETER.equals(parameter.name))
+                gzip = Boolean.parseBoolean(parameter.value);
+    }
+
+    @Override
+    public String[] getNames() {
+        return new String[]{PATTERN};
+    }
+
+    @Override
+    public boolean execute(final OHttpRequest iRequest, final OHttpResponse iResponse) throws Exception {
+        checkSyntax(iRequest.getUrl(), 2, "Syntax error: stream/<database>");
+        final String query = iRequest.getContent();
+        if (StringUtils.isBlank(query)) {
+            iResponse.send(OHttpUtils.STATUS_BADREQ_CODE, OHttpUtils.STATUS_BADREQ_DESCRIPTION,
+                           OHttpUtils.CONTENT_TEXT_PLAIN, "Missing query in request body", null);
+            return false;
+        }
+        final String formatParameter = iRequest.getParameter(FORMAT_PARAMETER);
+        final StreamFormat format = formatParameter != null ? parseFormat(formatParameter) : defaultFormat;
+        if (format == null) {
+            iResponse.send(OHttpUtils.STATUS_BADREQ_CODE, OHttpUtils.STATUS_BADREQ_DESCRIPTION,
+                           OHttpUtils.CONTENT_TEXT_PLAIN,
+                           "Invalid format '" + formatParameter + "', expected one of " + getFormatNames(), null);
+            return false;
+        }
+        final String acceptEncoding = iRequest.getHeader("Accept-Encoding");
+        final boolean compress = gzip && acceptEncoding != null && acceptEncoding.contains("gzip");
+        iRequest.getData().commandInfo = "Streaming query";
+        iRequest.getData().commandDetail = query;
+        final ODatabaseDocument db = getProfiledDatabaseInstance(iRequest);
+        try (OResultSet resultSet = db.query(query)) {
+            iResponse.writeStatus(OHttpUtils.STATUS_OK_CODE, OHttpUtils.STATUS_OK_DESCRIPTION);
+            // A failure while streaming can only be signaled by closing the connection before the last chunk
+            iResponse.writeHeaders(format == StreamFormat.NDJSON ? CONTENT_NDJSON : CONTENT_BINARY, false);
+            iResponse.writeLine("Transfer-Encoding: chunked");
+            if (compress)
+                iResponse.writeLine("Content-Encoding: gzip");
+            iResponse.writeLine(null);
+            final ChunkedOutputStream chunkedStream = new ChunkedOutputStream(iResponse.getOutputStream());
+            final OutputStream contentStream = compress ? new GZIPOutputStream(chunkedStream, CHUNK_SIZE) :
+                                               chunkedStream;
+            final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(contentStream,
+                                                                                                CHUNK_SIZE));
+            final long rows;
+            try {
+                rows = format == StreamFormat.NDJSON ? writeNdjson(resultSet, outputStream) : writeBinary(resultSet,
+                                                                                                          outputStream);
+            } catch (IOException | RuntimeException e) {
+                chunkedStream.abort();
+                throw e;
+            }
+            outputStream.close();
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("Streamed {} rows as {}", rows, format);
+        } finally {
+            db.close();
+        }
+        return false;
+    }
+
+    private static StreamFormat parseFormat(final String value) {
+        for (final StreamFormat format : StreamFormat.values())
+            if (format.name().equalsIgnoreCase(value))
+                return format;
+        return null;
+    }
+
+    private static String getFormatNames() {
+        return Arrays.stream(StreamFormat.values()).map(format -> format.name().toLowerCase()).collect(
+                Collectors.joining(", "));
+    }
+
+    private static long writeNdjson(final OResultSet resultSet, final DataOutputStream outputStream) throws IOException {
+        long rows = 0;
+        while (resultSet.hasNext()) {
+            outputStream.write(resultSet.next().toJSON().getBytes(StandardCharsets.UTF_8));
+            outputStream.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    private static long writeBinary(final OResultSet resultSet, final DataOutputStream outputStream) throws IOException {
+        long rows = 0;
+        while (resultSet.hasNext()) {
+            final OResult result = resultSet.next();
+            final byte[] bytes = ((ODocument) result.toElement()).toStream();
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Writes every buffer flushed by the enclosing streams as one HTTP chunk and the terminating chunk when closed.
+     * The underlying connection is not closed.
+     */
+    private static final class ChunkedOutputStream extends FilterOutputStream {
+        private boolean aborted;
+
+        ChunkedOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0)
+                return;
+            out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(b, off, len);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Prevents the terminating chunk, so the client does not mistake a failed response for a complete one.
+         */
+        void abort() {
+            aborted = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!aborted)
+                out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+}
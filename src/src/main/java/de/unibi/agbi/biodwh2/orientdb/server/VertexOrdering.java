@@ -0,0 +1,158 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.orientdb.server.model.VertexOrder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Insertion order of the vertices computed from the edges of the source graph. Vertices are inserted per label, so the
+ * order places connected vertices of the same label on nearby pages of their clusters, which reduces the random page
+ * loads of multi-hop traversals once the database exceeds the disk cache.
+ * <p>
+ * The adjacency of the whole graph is held in primitive arrays while the order is computed, which takes about 48 bytes
+ * per edge and 40 bytes per connected vertex. Only the node ids and ranks are sorted, the nodes themselves are read
+ * back by the importer in bounded windows.
+ */
+final class VertexOrdering {
+    private static final Logger LOGGER = LogManager.getLogger(VertexOrdering.class);
+
+    private final long[] nodeIds;
+    private final int[] ranks;
+
+    private VertexOrdering(final long[] nodeIds, final int[] ranks) {
+        this.nodeIds = nodeIds;
+        this.ranks = ranks;
+    }
+
+    /**
+     * @return the ordering or null if the graph has more edges than the primitive arrays can hold
+     */
+    static VertexOrdering compute(final Graph graph, final VertexOrder order) {
+        final long start = System.currentTimeMillis();
+        final long numberOfEdges = graph.getNumberOfEdges();
+        if (numberOfEdges > Integer.MAX_VALUE / 2) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Vertex ordering supports at most {} edges, inserting the {} edges in graph order instead",
+                            Integer.MAX_VALUE / 2, numberOfEdges);
+            return null;
+        }
+        final long[] fromIds = new long[(int) numberOfEdges];
+        final long[] toIds = new long[(int) numberOfEdges];
+        int edgeCount = 0;
+        for (final String label : graph.getEdgeLabels())
+            for (final Edge edge : graph.getEdges(label)) {
+                if (edgeCount == fromIds.length)
+                    break;
+                fromIds[edgeCount] = edge.getFromId();
+                toIds[edgeCount] = edge.getToId();
+                edgeCount++;
+            }
+        final long[] nodeIds = getUniqueSortedIds(fromIds, toIds, edgeCount);
+        final int[] from = new int[edgeCount];
+        final int[] to = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            from[i] = Arrays.binarySearch(nodeIds, fromIds[i]);
+            to[i] = Arrays.binarySearch(nodeIds, toIds[i]);
+        }
+        final int[] offsets = new int[nodeIds.length + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[from[i] + 1]++;
+            offsets[to[i] + 1]++;
+        }
+        for (int i = 0; i < nodeIds.length; i++)
+            offsets[i + 1] += offsets[i];
+        final int[] neighbors = new int[edgeCount * 2];
+        final int[] fill = Arrays.copyOf(offsets, nodeIds.length);
+        for (int i = 0; i < edgeCount; i++) {
+            neighbors[fill[from[i]]++] = to[i];
+            neighbors[fill[to[i]]++] = from[i];
+        }
+        final int[] degreeOrder = getDegreeOrder(offsets, nodeIds.length);
+        final int[] vertexOrder = order == VertexOrder.BFS ? getBreadthFirstOrder(offsets, neighbors, degreeOrder) :
+                                  degreeOrder;
+        final int[] ranks = new int[nodeIds.length];
+        for (int rank = 0; rank < vertexOrder.length; rank++)
+            ranks[vertexOrder[rank]] = rank;
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Computed {} order of {} connected vertices in {} ms", order, nodeIds.length,
+                        System.currentTimeMillis() - start);
+        return new VertexOrdering(nodeIds, ranks);
+    }
+
+    private static long[] getUniqueSortedIds(final long[] fromIds, final long[] toIds, final int edgeCount) {
+        final long[] ids = new long[edgeCount * 2];
+        System.arraycopy(fromIds, 0, ids, 0, edgeCount);
+        System.arraycopy(toIds, 0, ids, edgeCount, edgeCount);
+        Arrays.sort(ids);
+        int uniqueCount = 0;
+        for (int i = 0; i < ids.length; i++)
+            if (i == 0 || ids[i] != ids[i - 1])
+                ids[uniqueCount++] = ids[i];
+        return Arrays.copyOf(ids, uniqueCount);
+    }
+
+    private static int[] getDegreeOrder(final int[] offsets, final int vertexCount) {
+        // Sort by descending degree and ascending vertex index packed into a single primitive key
+        final long[] keys = new long[vertexCount];
+        for (int i = 0; i < vertexCount; i++)
+            keys[i] = ((long) (Integer.MAX_VALUE - (offsets[i + 1] - offsets[i])) << 32) | i;
+        Arrays.sort(keys);
+        final int[] result = new int[vertexCount];
+        for (int i = 0; i < vertexCount; i++)
+            result[i] = (int) keys[i];
+        return result;
+    }
+
+    private static int[] getBreadthFirstOrder(final int[] offsets, final int[] neighbors, final int[] seeds) {
+        final int[] queue = new int[seeds.length];
+        final boolean[] visited = new boolean[seeds.length];
+        int tail = 0;
+        for (final int seed : seeds) {
+            if (visited[seed])
+                continue;
+            visited[seed] = true;
+            int head = tail;
+            queue[tail++] = seed;
+            while (head < tail) {
+                final int vertex = queue[head++];
+                for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++)
+                    if (!visited[neighbors[i]]) {
+                        visited[neighbors[i]] = true;
+                        queue[tail++] = neighbors[i];
+                    }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Computes the insertion positions of the nodes of a label, sorted by their rank. Nodes without any edges keep their
+     * relative order and are placed after all connected nodes.
+     *
+     * @return the position of each node, indexed by the iteration order of {@code labelNodes}
+     */
+    int[] getPositions(final Iterable<Node> labelNodes, final int count) {
+        final long[] keys = new long[count];
+        int index = 0;
+        for (final Node node : labelNodes) {
+            if (index == count)
+                throw new IllegalStateException("More nodes than expected in label");
+            final int nodeIndex = Arrays.binarySearch(nodeIds, node.getId());
+            final long rank = nodeIndex >= 0 ? ranks[nodeIndex] : ranks.length;
+            keys[index] = (rank << 32) | index;
+            index++;
+        }
+        if (index != count)
+            throw new IllegalStateException("Fewer nodes than expected in label");
+        Arrays.sort(keys);
+        final int[] positions = new int[count];
+        for (int position = 0; position < count; position++)
+            positions[(int) keys[position]] = position;
+        return positions;
+    }
+}
@@ -2,6 +2,8 @@ package de.unibi.agbi.biodwh2.orientdb.server.model;
 
 import picocli.CommandLine;
 
+import java.util.List;
+
 @CommandLine.Command(name = "BioDWH2-OrientDB-Server.jar", sortOptions = false, separator = " ", footer = "Visit https://biodwh2.github.io for more documentation.")
 public class CmdArgs {
     @CommandLine.Option(names = {"-h", "--help"}, usageHelp = true, description = "print this message", order = 1)
@@ -26,4 +28,104 @@ public class CmdArgs {
             "-sp", "--studio-port"
     }, defaultValue = "2480-2490", paramLabel = "<studioPort>", description = "Specifies the OrientDB Studio port(-range) (default 2480-2490)", order = 6)
     public String studioPort;
+    @CommandLine.Option(names = {
+            "-w", "--workers"
+    }, defaultValue = "1", paramLabel = "<workers>", description = "Number of parallel import workers used by the create commands (default 1)", order = 7)
+    public int workers;
+    @CommandLine.Option(names = {
+            "-bs", "--batch-size"
+    }, defaultValue = "10000", paramLabel = "<batchSize>", description = "Number of records committed per import transaction (default 10000)", order = 8)
+    public int batchSize;
+    @CommandLine.Option(names = {
+            "-mm", "--memory-mapped-ids"
+    }, description = "Keep the node id mapping of the create commands in a memory-mapped file instead of direct memory", order = 9)
+    public boolean memoryMappedIdMapping;
+    @CommandLine.Option(names = {
+            "-le", "--lightweight-edges"
+    }, description = "Store edge labels without properties as lightweight edges", order = 10)
+    public boolean lightweightEdges;
+    @CommandLine.Option(names = {
+            "-bl", "--bulk-load"
+    }, description = "Create the database without WAL and file syncs and with a disk cache sized for the import", order = 11)
+    public boolean bulkLoad;
+    @CommandLine.Option(names = {
+            "-r", "--readers"
+    }, defaultValue = "1", paramLabel = "<readers>", description = "Number of threads reading labels from the workspace graph during the create commands (default 1)", order = 12)
+    public int readers;
+    @CommandLine.Option(names = {
+            "-i", "--incremental"
+    }, description = "Only reimport the labels which changed since the last incremental create command", order = 13)
+    public boolean incremental;
+    @CommandLine.Option(names = {
+            "-rs", "--resume"
+    }, description = "Checkpoint the create commands and continue an interrupted import instead of starting over", order = 14)
+    public boolean resume;
+    @CommandLine.Option(names = {
+            "-it", "--index-threads"
+    }, defaultValue = "1", paramLabel = "<indexThreads>", description = "Number of labels whose indices are built concurrently (default 1)", order = 15)
+    public int indexThreads;
+    @CommandLine.Option(names = {
+            "-pi", "--priority-indices"
+    }, split = ",", paramLabel = "<label.property>", description = "Only build these indices during the create commands and all others in the background once the server is started", order = 16)
+    public List<String> priorityIndices;
+    @CommandLine.Option(names = {
+            "-mc", "--max-clusters"
+    }, defaultValue = "0", paramLabel = "<maxClusters>", description = "Maximum number of clusters per label (default number of cores)", order = 17)
+    public int maxClusters;
+    @CommandLine.Option(names = {
+            "-cls", "--cluster-selection"
+    }, defaultValue = "round-robin", paramLabel = "<strategy>", description = "Cluster selection strategy of the created classes: round-robin, default, balanced or local (default round-robin)", order = 18)
+    public String clusterSelection;
+    @CommandLine.Option(names = {
+            "-vo", "--vertex-order"
+    }, defaultValue = "GRAPH", paramLabel = "<order>", description = "Insertion order of the vertices of each label: ${COMPLETION-CANDIDATES} (default GRAPH)", order = 19)
+    public VertexOrder vertexOrder;
+    @CommandLine.Option(names = {
+            "-wc", "--warmup-classes"
+    }, split = ",", paramLabel = "<label>", description = "Classes whose records are loaded into the disk cache with all indices before the server accepts connections (default the classes of the last warm-up)", order = 20)
+    public List<String> warmupClasses;
+    @CommandLine.Option(names = {
+            "-wm", "--warmup-memory"
+    }, defaultValue = "0", paramLabel = "<MB>", description = "Memory budget of the cache warm-up in MB, 0 for half of the disk cache and -1 to disable the warm-up (default 0)", order = 21)
+    public int warmupMemory;
+    @CommandLine.Option(names = {
+            "-ro", "--read-only"
+    }, description = "Serve the database read-only with a minimal write cache and reject all writes", order = 22)
+    public boolean readOnly;
+    @CommandLine.Option(names = {
+            "-sf", "--stream-format"
+    }, defaultValue = "NDJSON", paramLabel = "<format>", description = "Default format of the streaming query endpoint /stream/BioDWH2: ${COMPLETION-CANDIDATES} (default NDJSON)", order = 23)
+    public StreamFormat streamFormat;
+    @CommandLine.Option(names = {
+            "-sg", "--stream-gzip"
+    }, description = "Compress the responses of the streaming query endpoint with gzip if accepted by the client", order = 24)
+    public boolean streamGzip;
+    @CommandLine.Option(names = {
+            "-nt", "--neighborhood-threads"
+    }, defaultValue = "0", paramLabel = "<threads>", description = "Number of seeds expanded in parallel per request of the neighborhood endpoint /neighborhood/BioDWH2 (default number of cores)", order = 25)
+    public int neighborhoodThreads;
+    @CommandLine.Option(names = {
+            "-qc", "--query-cache"
+    }, defaultValue = "0", paramLabel = "<MB>", description = "Cache the results of idempotent REST and Studio queries up to the given size in MB until the workspace checksum changes (default 0, disabled)", order = 26)
+    public int queryCache;
+    @CommandLine.Option(names = {
+            "-ss", "--snapshot"
+    }, arity = "1", paramLabel = "<workspacePath>", description = "Pack the created OrientDB database of the workspace into a snapshot archive", order = 27)
+    public String snapshot;
+    @CommandLine.Option(names = {
+            "-rst", "--restore"
+    }, arity = "1", paramLabel = "<workspacePath>", description = "Restore the OrientDB database of the workspace from a snapshot archive and verify it against the workspace graph", order = 28)
+    public String restore;
+    @CommandLine.Option(names = {
+            "-sfp", "--snapshot-file"
+    }, paramLabel = "<filePath>", description = "Snapshot archive of the snapshot and restore commands (default <workspacePath>/orientdb/BioDWH2.snapshot)", order = 29)
+    public String snapshotFile;
+    @CommandLine.Option(names = {
+            "-aw", "--add-workspace"
+    }, paramLabel = "<name=workspacePath>", description = "Serve the database of another workspace under the given name from the same server (repeatable, start commands only)", order = 30)
+    public List<String> addWorkspaces;
+    @CommandLine.Option(names = {
+            "-dc", "--disk-cache"
+    }, defaultValue = "0", paramLabel = "<MB>", description = "Size of the disk cache shared by all served databases in MB (default 0, OrientDB default)", order = 31)
+    public int diskCache;
 }
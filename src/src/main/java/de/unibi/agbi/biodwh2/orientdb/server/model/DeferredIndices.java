@@ -0,0 +1,9 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DeferredIndices {
+    public int threads = 1;
+    public List<IndexDefinition> indices = new ArrayList<>();
+}
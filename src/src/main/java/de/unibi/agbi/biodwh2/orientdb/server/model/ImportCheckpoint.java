@@ -0,0 +1,18 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ImportCheckpoint {
+    public String sourceGraphChecksum;
+    public ImportState previousState;
+    public Set<String> completedNodeLabels = new HashSet<>();
+    public Set<String> startedEdgeLabels = new HashSet<>();
+    public Set<String> completedEdgeLabels = new HashSet<>();
+    public Map<String, List<String>> edgeLabelEndpoints = new HashMap<>();
+    public Set<String> startedIndices = new HashSet<>();
+    public Set<String> completedIndices = new HashSet<>();
+}
@@ -0,0 +1,53 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ImportOptions {
+    public static final List<String> CLUSTER_SELECTION_STRATEGIES = Arrays.asList("round-robin", "default",
+                                                                                  "balanced", "local");
+
+    public int workers = 1;
+    public int readers = 1;
+    public int batchSize = 10000;
+    public boolean memoryMappedIdMapping;
+    public boolean lightweightEdges;
+    public boolean bulkLoad;
+    public boolean incremental;
+    public boolean resume;
+    public int indexThreads = 1;
+    /**
+     * Names of the indices built during the import, all other indices are built in the background once the server is
+     * started. If null, all indices are built during the import.
+     */
+    public List<String> priorityIndices;
+    public int maxClusters = Runtime.getRuntime().availableProcessors();
+    /**
+     * OrientDB cluster selection strategy of the created classes, one of {@link #CLUSTER_SELECTION_STRATEGIES}.
+     */
+    public String clusterSelection = "round-robin";
+    /**
+     * Insertion order of the vertices of each label. Orders other than {@link VertexOrder#GRAPH} are computed from all
+     * edges before the nodes are imported.
+     */
+    public VertexOrder vertexOrder = VertexOrder.GRAPH;
+
+    public static ImportOptions fromCmdArgs(final CmdArgs commandLine) {
+        final ImportOptions options = new ImportOptions();
+        options.workers = Math.max(1, commandLine.workers);
+        options.readers = Math.max(1, commandLine.readers);
+        options.batchSize = Math.max(1, commandLine.batchSize);
+        options.memoryMappedIdMapping = commandLine.memoryMappedIdMapping;
+        options.lightweightEdges = commandLine.lightweightEdges;
+        options.bulkLoad = commandLine.bulkLoad;
+        options.incremental = commandLine.incremental;
+        options.resume = commandLine.resume;
+        options.indexThreads = Math.max(1, commandLine.indexThreads);
+        options.priorityIndices = commandLine.priorityIndices;
+        if (commandLine.maxClusters > 0)
+            options.maxClusters = commandLine.maxClusters;
+        options.clusterSelection = commandLine.clusterSelection;
+        options.vertexOrder = commandLine.vertexOrder;
+        return options;
+    }
+}
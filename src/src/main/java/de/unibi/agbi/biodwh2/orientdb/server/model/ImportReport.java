@@ -0,0 +1,26 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.Map;
+
+public class ImportReport {
+    public String createdAt;
+    public String sourceGraph;
+    public long sourceGraphSize;
+    public String sourceGraphModified;
+    public ImportOptions options;
+    public long totalMillis;
+    public Map<String, Long> phaseMillis;
+    public long nodes;
+    public long edges;
+    public Map<String, Label> nodeLabels;
+    public Map<String, Label> edgeLabels;
+    public long peakHeapUsedBytes;
+    public long peakDirectMemoryUsedBytes;
+    public int diskCacheHitRate;
+
+    public static class Label {
+        public long count;
+        public long millis;
+        public long perSecond;
+    }
+}
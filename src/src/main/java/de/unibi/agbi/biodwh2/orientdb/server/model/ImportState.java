@@ -0,0 +1,11 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ImportState {
+    public Map<String, String> nodeLabelFingerprints = new HashMap<>();
+    public Map<String, String> edgeLabelFingerprints = new HashMap<>();
+    public Map<String, List<String>> edgeLabelEndpoints = new HashMap<>();
+}
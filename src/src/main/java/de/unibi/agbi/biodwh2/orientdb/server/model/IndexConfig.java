@@ -0,0 +1,16 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IndexConfig {
+    /**
+     * Build the indices of the workspace graph as hash indices, which only support equality lookups.
+     */
+    public boolean hashIndices;
+    /**
+     * Additional indices. An entry replaces the workspace graph index on the same label and properties, full-text
+     * indices are added alongside.
+     */
+    public List<IndexDefinition> indices = new ArrayList<>();
+}
@@ -0,0 +1,13 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IndexDefinition {
+    public String label;
+    public List<String> properties = new ArrayList<>();
+    /**
+     * OrientDB index type: UNIQUE, NOTUNIQUE, UNIQUE_HASH_INDEX, NOTUNIQUE_HASH_INDEX or FULLTEXT (Lucene).
+     */
+    public String type;
+}
@@ -0,0 +1,19 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Neighborhood {
+    /**
+     * Record ids of the seed vertices found for each requested value.
+     */
+    public Map<String, List<String>> seeds = new LinkedHashMap<>();
+    public List<Map<String, Object>> vertices = new ArrayList<>();
+    public List<Map<String, Object>> edges = new ArrayList<>();
+    /**
+     * Whether the expansion stopped early because the vertex limit was reached.
+     */
+    public boolean truncated;
+}
@@ -0,0 +1,26 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NeighborhoodRequest {
+    /**
+     * Label and indexed property used to look up the seed vertices by the given values.
+     */
+    public String label;
+    public String property;
+    public List<Object> values = new ArrayList<>();
+    public int depth = 1;
+    /**
+     * Labels of the followed edges. If empty, all edges are followed.
+     */
+    public List<String> edgeLabels = new ArrayList<>();
+    /**
+     * Direction of the followed edges: OUT, IN or BOTH.
+     */
+    public String direction = "BOTH";
+    /**
+     * Maximum number of vertices in the result.
+     */
+    public int limit = 100000;
+}
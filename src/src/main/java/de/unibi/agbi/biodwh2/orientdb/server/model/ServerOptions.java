@@ -0,0 +1,75 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ServerOptions {
+    public String port = "2424-2430";
+    public String studioPort = "2480-2490";
+    /**
+     * Classes loaded into the disk cache with all indices before the server accepts connections. If null, the classes
+     * of the last warm-up are used.
+     */
+    public List<String> warmupClasses;
+    /**
+     * Memory budget of the cache warm-up in MB, 0 for half of the disk cache and a negative value to disable it.
+     */
+    public int warmupMemory;
+    public boolean readOnly;
+    /**
+     * Format of the streaming query endpoint if a request does not select one.
+     */
+    public StreamFormat streamFormat = StreamFormat.NDJSON;
+    public boolean streamGzip;
+    public int neighborhoodThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Size of the query result cache in MB, 0 to disable it.
+     */
+    public int queryCache;
+    /**
+     * Workspace paths served as additional databases besides the database of the started workspace, by database name.
+     */
+    public Map<String, String> workspaces = new LinkedHashMap<>();
+    /**
+     * Size of the disk cache shared by all databases in MB, 0 for the OrientDB default.
+     */
+    public int diskCache;
+
+    public static ServerOptions fromCmdArgs(final CmdArgs commandLine) {
+        final ServerOptions options = new ServerOptions();
+        options.port = commandLine.port;
+        options.studioPort = commandLine.studioPort;
+        options.warmupClasses = commandLine.warmupClasses;
+        options.warmupMemory = commandLine.warmupMemory;
+        options.readOnly = commandLine.readOnly;
+        options.streamFormat = commandLine.streamFormat;
+        options.streamGzip = commandLine.streamGzip;
+        if (commandLine.neighborhoodThreads > 0)
+            options.neighborhoodThreads = commandLine.neighborhoodThreads;
+        options.queryCache = Math.max(0, commandLine.queryCache);
+        if (commandLine.addWorkspaces != null)
+            for (final String workspace : commandLine.addWorkspaces)
+                options.workspaces.put(getWorkspaceName(workspace), getWorkspacePath(workspace));
+        options.diskCache = Math.max(0, commandLine.diskCache);
+        return options;
+    }
+
+    /**
+     * Returns the name of {@code <name>=<workspacePath>}, or the directory name if only the path is given.
+     */
+    private static String getWorkspaceName(final String workspace) {
+        if (workspace.contains("="))
+            return StringUtils.substringBefore(workspace, "=").trim();
+        final Path fileName = Paths.get(workspace.trim()).toAbsolutePath().normalize().getFileName();
+        return fileName != null ? fileName.toString() : workspace.trim();
+    }
+
+    private static String getWorkspacePath(final String workspace) {
+        return workspace.contains("=") ? StringUtils.substringAfter(workspace, "=").trim() : workspace.trim();
+    }
+}
@@ -0,0 +1,12 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+public enum StreamFormat {
+    /**
+     * One JSON document per line.
+     */
+    NDJSON,
+    /**
+     * Records in the OrientDB binary record format, each prefixed by its length as a big-endian 32 bit integer.
+     */
+    BINARY
+}
@@ -0,0 +1,16 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+public enum VertexOrder {
+    /**
+     * Order in which the workspace graph returns the nodes of a label.
+     */
+    GRAPH,
+    /**
+     * Breadth-first order starting at the vertices with the highest degree.
+     */
+    BFS,
+    /**
+     * Descending order of the vertex degrees.
+     */
+    DEGREE
+}
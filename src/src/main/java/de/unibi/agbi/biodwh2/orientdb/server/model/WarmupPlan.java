@@ -0,0 +1,9 @@
+package de.unibi.agbi.biodwh2.orientdb.server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WarmupPlan {
+    public List<String> indices = new ArrayList<>();
+    public List<String> classes = new ArrayList<>();
+}
@@ -0,0 +1,189 @@
+package de.unibi.agbi.biodwh2.orientdb.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.server.OServer;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.config.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the cached query command on one HTTP listener and the original OrientDB commands on a second listener of the
+ * same server, so both the precedence of the listener command and the response format are checked end to end.
+ */
+class CachedQueryCommandTest {
+    private static final String DATABASE = "test";
+    private static final String AUTHORIZATION = "Basic " + Base64.getEncoder().encodeToString(
+            "admin:admin".getBytes(StandardCharsets.UTF_8));
+
+    @TempDir
+    static Path serverPath;
+    private static OServer server;
+    private static int cachedPort;
+    private static int originalPort;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        System.setProperty("ORIENTDB_HOME", serverPath.toString());
+        System.setProperty("ORIENTDB_ROOT_PASSWORD", "root");
+        server = OServerMain.create();
+        server.startup(getServerConfig());
+        server.activate();
+        cachedPort = server.getNetworkListeners().get(0).getInboundAddr().getPort();
+        originalPort = server.getNetworkListeners().get(1).getInboundAddr().getPort();
+        server.getContext().execute(
+                "CREATE DATABASE " + DATABASE + " memory users (admin identified by 'admin' role admin)").close();
+        try (ODatabaseSession db = server.getContext().open(DATABASE, "admin", "admin")) {
+            db.command("CREATE CLASS Gene").close();
+            db.command("INSERT INTO Gene SET symbol = 'TP53', ids = [7157]").close();
+            db.command("INSERT INTO Gene SET symbol = 'BRCA1', ids = [672]").close();
+        }
+    }
+
+    private static OServerConfiguration getServerConfig() {
+        final OServerConfiguration config = new OServerConfiguration();
+        config.network = new OServerNetworkConfiguration();
+        final OServerNetworkProtocolConfiguration httpProtocol = new OServerNetworkProtocolConfiguration();
+        httpProtocol.name = "http";
+        httpProtocol.implementation = "com.orientechnologies.orient.server.network.protocol.http.ONetworkProtocolHttpDb";
+        config.network.protocols = Arrays.asList(httpProtocol);
+        final OServerCommandConfiguration cachedQueryCommand = new OServerCommandConfiguration();
+        cachedQueryCommand.implementation = CachedQueryCommand.class.getName();
+        cachedQueryCommand.pattern = String.join(" ", CachedQueryCommand.PATTERNS);
+        cachedQueryCommand.parameters = new OServerEntryConfiguration[]{
+                new OServerEntryConfiguration(CachedQueryCommand.SIZE_PARAMETER, String.valueOf(1024 * 1024)),
+                new OServerEntryConfiguration(CachedQueryCommand.CHECKSUM_FILE_PARAMETER_PREFIX + DATABASE,
+                                              serverPath.resolve("checksum.txt").toString())
+        };
+        final OServerNetworkListenerConfiguration cachedListener = getHttpListener("2580-2589");
+        cachedListener.commands = new OServerCommandConfiguration[]{cachedQueryCommand};
+        config.network.listeners = Arrays.asList(cachedListener, getHttpListener("2590-2599"));
+        config.users = new OServerUserConfiguration[]{new OServerUserConfiguration("root", "root", "*")};
+        config.properties = new OServerEntryConfiguration[]{
+                new OServerEntryConfiguration("server.database.path", serverPath.resolve("databases").toString())
+        };
+        return config;
+    }
+
+    private static OServerNetworkListenerConfiguration getHttpListener(final String portRange) {
+        final OServerNetworkListenerConfiguration listener = new OServerNetworkListenerConfiguration();
+        listener.ipAddress = "127.0.0.1";
+        listener.portRange = portRange;
+        listener.protocol = "http";
+        return listener;
+    }
+
+    @AfterAll
+    static void stopServer() {
+        if (server != null)
+            server.shutdown();
+    }
+
+    @Test
+    void repeatedQueryIsAnsweredFromCache() throws Exception {
+        final String url = "/query/" + DATABASE + "/sql/" + encode("SELECT symbol FROM Gene WHERE symbol = 'TP53'");
+        final long hits = getCacheAttribute("Hits");
+        final long misses = getCacheAttribute("Misses");
+        final Response first = request(cachedPort, "GET", url, null);
+        final Response second = request(cachedPort, "GET", url, null);
+        assertEquals(200, first.status);
+        assertEquals(first.body, second.body);
+        assertEquals(misses + 1, getCacheAttribute("Misses"));
+        assertEquals(hits + 1, getCacheAttribute("Hits"));
+    }
+
+    @Test
+    void queryResponseMatchesOriginalCommand() throws Exception {
+        final String url = "/query/" + DATABASE + "/sql/" + encode("SELECT FROM Gene ORDER BY symbol") + "/10";
+        assertSameResponse(request(originalPort, "GET", url, null), request(cachedPort, "GET", url, null));
+        assertSameResponse(request(originalPort, "GET", url, null), request(cachedPort, "GET", url, null));
+    }
+
+    @Test
+    void commandResponseMatchesOriginalCommand() throws Exception {
+        final String url = "/command/" + DATABASE + "/sql";
+        final String body = "{\"command\": \"SELECT symbol, ids FROM Gene WHERE symbol = ?\", \"parameters\": [\"BRCA1\"]}";
+        assertSameResponse(request(originalPort, "POST", url, body), request(cachedPort, "POST", url, body));
+        assertSameResponse(request(originalPort, "POST", url, body), request(cachedPort, "POST", url, body));
+    }
+
+    @Test
+    void invalidStatementIsBadRequest() throws Exception {
+        final Response response = request(cachedPort, "GET", "/query/" + DATABASE + "/sql/" + encode("SELEC FROM"),
+                                          null);
+        assertEquals(400, response.status);
+    }
+
+    private static void assertSameResponse(final Response expected, final Response actual) throws IOException {
+        assertEquals(200, expected.status);
+        assertEquals(expected.status, actual.status);
+        assertEquals(withoutExecutionPlan(expected.body), withoutExecutionPlan(actual.body));
+    }
+
+    /**
+     * The execution plan contains timings which differ between executions.
+     */
+    private static JsonNode withoutExecutionPlan(final String body) throws IOException {
+        final JsonNode node = new ObjectMapper().readTree(body);
+        assertTrue(node.has("result"));
+        ((ObjectNode) node).remove("executionPlan");
+        return node;
+    }
+
+    private static long getCacheAttribute(final String name) throws Exception {
+        return (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName(QueryResultCache.OBJECT_NAME), name);
+    }
+
+    private static String encode(final String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static final class Response {
+        int status;
+        String body;
+    }
+
+    private static Response request(final int port, final String method, final String path,
+                                    final String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://127.0.0.1:" + port + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Authorization", AUTHORIZATION);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final Response response = new Response();
+        response.status = connection.getResponseCode();
+        try (InputStream input = response.status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            response.body = input != null ? new String(input.readAllBytes(), StandardCharsets.UTF_8) : "";
+        } finally {
+            connection.disconnect();
+        }
+        return response;
+    }
+}